@@ -0,0 +1,40 @@
+package inge2.dataflow.zeroanalysis;
+
+import inge2.dataflow.util.visitor.UnsupportedValuePolicy;
+import org.openjdk.jmh.annotations.*;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a whole {@link DivisionByZeroAnalysis}, from the initial states to the fixpoint, with each solver.
+ * The method bodies and their {@link ExceptionalUnitGraph}s are built once per trial, so only the analysis is measured.
+ * See {@link SyntheticMethodBodies} for the shape of the bodies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DivisionByZeroAnalysisBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int blocks;
+
+    @Param({"SOOT", "SCC_WORKLIST", "SPARSE"})
+    public ZeroAnalysisSolver solver;
+
+    private ExceptionalUnitGraph graph;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticMethodBodies.setupSoot();
+        graph = new ExceptionalUnitGraph(SyntheticMethodBodies.build(blocks));
+    }
+
+    @Benchmark
+    public DivisionByZeroAnalysis analysis() {
+        return new DivisionByZeroAnalysis(graph, UnsupportedValuePolicy.TOP, solver);
+    }
+}
@@ -0,0 +1,53 @@
+package inge2.dataflow.zeroanalysis;
+
+import org.openjdk.jmh.annotations.*;
+import soot.Unit;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a {@link DivisorQuery} on the first and on the last division of a body, with a new query object each time
+ * so that no reaching definitions are reused. The divisor of the first division only depends on a few definitions,
+ * while the one of the last division depends on the whole chain of blocks. Compare with
+ * {@link DivisionByZeroAnalysisBenchmark}, which analyzes the same bodies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DivisorQueryBenchmark {
+
+    @Param({"16", "128", "1024"})
+    public int blocks;
+
+    private ExceptionalUnitGraph graph;
+    private Unit firstDivision;
+    private Unit lastDivision;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticMethodBodies.setupSoot();
+        graph = new ExceptionalUnitGraph(SyntheticMethodBodies.build(blocks));
+        for (Unit unit : graph.getBody().getUnits()) {
+            if (DivisorQuery.isDivision(unit)) {
+                if (firstDivision == null) {
+                    firstDivision = unit;
+                }
+                lastDivision = unit;
+            }
+        }
+    }
+
+    @Benchmark
+    public ZeroAbstractValue firstDivision() {
+        return new DivisorQuery(graph).divisorValue(firstDivision);
+    }
+
+    @Benchmark
+    public ZeroAbstractValue lastDivision() {
+        return new DivisorQuery(graph).divisorValue(lastDivision);
+    }
+}
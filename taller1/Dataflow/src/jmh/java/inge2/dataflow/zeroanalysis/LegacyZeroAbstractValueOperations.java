@@ -0,0 +1,63 @@
+package inge2.dataflow.zeroanalysis;
+
+/**
+ * The string-comparison implementation of the {@link ZeroAbstractValue} operations, kept as the reference for
+ * {@link ZeroAbstractValueBenchmark}.
+ */
+final class LegacyZeroAbstractValueOperations {
+
+    private LegacyZeroAbstractValueOperations() {
+    }
+
+    static ZeroAbstractValue add(ZeroAbstractValue self, ZeroAbstractValue another) {
+        if(self.toString().equals(ZeroAbstractValue.BOTTOM.toString()) || another.toString().equals(ZeroAbstractValue.BOTTOM.toString())){
+            return ZeroAbstractValue.BOTTOM;
+        }
+        if(self.toString().equals(ZeroAbstractValue.ZERO.toString()) && another.toString().equals(ZeroAbstractValue.ZERO.toString())){
+            return ZeroAbstractValue.ZERO;
+        }
+        if(self.toString().equals(ZeroAbstractValue.NOT_ZERO.toString()) && another.toString().equals(ZeroAbstractValue.ZERO.toString())){
+            return ZeroAbstractValue.NOT_ZERO;
+        }
+        if(self.toString().equals(ZeroAbstractValue.ZERO.toString()) && another.toString().equals(ZeroAbstractValue.NOT_ZERO.toString())){
+            return ZeroAbstractValue.NOT_ZERO;
+        }
+        return ZeroAbstractValue.MAYBE_ZERO;
+    }
+
+    static ZeroAbstractValue divideBy(ZeroAbstractValue self, ZeroAbstractValue another) {
+        if(self.toString().equals(ZeroAbstractValue.BOTTOM.toString()) || another.toString().equals(ZeroAbstractValue.BOTTOM.toString())){
+            return ZeroAbstractValue.BOTTOM;
+        }
+        else if(another.toString().equals(ZeroAbstractValue.ZERO.toString())){
+            return ZeroAbstractValue.BOTTOM;
+        }
+        else if(self.toString().equals(ZeroAbstractValue.ZERO.toString())){
+            return ZeroAbstractValue.ZERO;
+        }
+        return ZeroAbstractValue.MAYBE_ZERO;
+    }
+
+    static ZeroAbstractValue multiplyBy(ZeroAbstractValue self, ZeroAbstractValue another) {
+        if(self.toString().equals(ZeroAbstractValue.BOTTOM.toString()) || another.toString().equals(ZeroAbstractValue.BOTTOM.toString())){
+            return ZeroAbstractValue.BOTTOM;
+        }
+        if(self.toString().equals(ZeroAbstractValue.ZERO.toString()) || another.toString().equals(ZeroAbstractValue.ZERO.toString())){
+            return ZeroAbstractValue.ZERO;
+        }
+        if(self.toString().equals(ZeroAbstractValue.NOT_ZERO.toString()) && another.toString().equals(ZeroAbstractValue.NOT_ZERO.toString())){
+            return ZeroAbstractValue.NOT_ZERO;
+        }
+        return ZeroAbstractValue.MAYBE_ZERO;
+    }
+
+    static ZeroAbstractValue merge(ZeroAbstractValue self, ZeroAbstractValue another) {
+        if(self.toString().equals(ZeroAbstractValue.MAYBE_ZERO.toString()) || another.toString().equals(ZeroAbstractValue.MAYBE_ZERO.toString())){
+            return ZeroAbstractValue.MAYBE_ZERO;
+        }
+        if(self.toString().equals(ZeroAbstractValue.BOTTOM.toString()) && !another.toString().equals(ZeroAbstractValue.BOTTOM.toString())){
+            return another;
+        }
+        return self;
+    }
+}
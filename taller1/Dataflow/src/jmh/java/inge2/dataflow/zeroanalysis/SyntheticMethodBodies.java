@@ -0,0 +1,103 @@
+package inge2.dataflow.zeroanalysis;
+
+import soot.Body;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Modifier;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.jimple.IntConstant;
+import soot.jimple.Jimple;
+import soot.jimple.JimpleBody;
+import soot.options.Options;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds Jimple bodies of any size for the benchmarks, without compiling or loading any class file.
+ * The body of <code>static int func(int p, int q)</code> is a sequence of blocks like:
+ * <pre>
+ * a_i = c_{i-1} + 1
+ * b_i = q * a_i
+ * c_i = a_i / b_i
+ * </pre>
+ * where every {@link #LOOP_EVERY}-th block ends with <code>if b_i == 0 goto a_i</code>, so the graph has loops.
+ */
+final class SyntheticMethodBodies {
+
+    /**
+     * How often a block jumps back to its first statement.
+     */
+    static final int LOOP_EVERY = 4;
+
+    private static int classCount;
+
+    private SyntheticMethodBodies() {
+    }
+
+    /**
+     * Resets Soot and loads the basic classes of the running JVM, which the exceptional graphs need to know which
+     * statements may throw.
+     */
+    static void setupSoot() {
+        G.reset();
+        Options.v().set_soot_classpath(System.getProperty("java.home") + File.separator + "lib" + File.separator + "rt.jar");
+        Options.v().set_allow_phantom_refs(true);
+        Scene.v().loadNecessaryClasses();
+    }
+
+    /**
+     * Builds a new method with the given amount of blocks. {@link #setupSoot()} must be called first.
+     * @param blocks the amount of blocks.
+     * @return the body of the method.
+     */
+    static Body build(int blocks) {
+        SootClass sootClass = new SootClass("inge2.dataflow.synthetic.Synthetic" + classCount++, Modifier.PUBLIC);
+        sootClass.setSuperclass(Scene.v().getSootClass("java.lang.Object"));
+        Scene.v().addClass(sootClass);
+        sootClass.setApplicationClass();
+
+        List<Type> parameters = Arrays.asList(IntType.v(), IntType.v());
+        SootMethod method = Scene.v().makeSootMethod("func", parameters, IntType.v(), Modifier.PUBLIC | Modifier.STATIC);
+        sootClass.addMethod(method);
+
+        Jimple jimple = Jimple.v();
+        JimpleBody body = jimple.newBody(method);
+        method.setActiveBody(body);
+
+        Local p = newLocal(body, "p");
+        Local q = newLocal(body, "q");
+        body.getUnits().add(jimple.newIdentityStmt(p, jimple.newParameterRef(IntType.v(), 0)));
+        body.getUnits().add(jimple.newIdentityStmt(q, jimple.newParameterRef(IntType.v(), 1)));
+
+        Local previous = p;
+        for (int i = 0; i < blocks; i++) {
+            Local a = newLocal(body, "a" + i);
+            Local b = newLocal(body, "b" + i);
+            Local c = newLocal(body, "c" + i);
+
+            Unit head = jimple.newAssignStmt(a, jimple.newAddExpr(previous, IntConstant.v(1)));
+            body.getUnits().add(head);
+            body.getUnits().add(jimple.newAssignStmt(b, jimple.newMulExpr(q, a)));
+            body.getUnits().add(jimple.newAssignStmt(c, jimple.newDivExpr(a, b)));
+            if (i % LOOP_EVERY == LOOP_EVERY - 1) {
+                body.getUnits().add(jimple.newIfStmt(jimple.newEqExpr(b, IntConstant.v(0)), head));
+            }
+            previous = c;
+        }
+        body.getUnits().add(jimple.newReturnStmt(previous));
+        return body;
+    }
+
+    private static Local newLocal(Body body, String name) {
+        Local local = Jimple.v().newLocal(name, IntType.v());
+        body.getLocals().add(local);
+        return local;
+    }
+}
@@ -0,0 +1,76 @@
+package inge2.dataflow.zeroanalysis;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ZeroAbstractState} operations the fixpoint uses on every merge and every flow function: union,
+ * putAll and equals, over states with {@link #variables} variables that share a single {@link LocalNumbering}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZeroAbstractStateBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int variables;
+
+    private LocalNumbering locals;
+    private ZeroAbstractState left;
+    private ZeroAbstractState right;
+
+    /**
+     * A state with the same values as {@link #left}, built independently so that they do not share storage.
+     */
+    private ZeroAbstractState leftCopy;
+
+    @Setup
+    public void setup() {
+        locals = new LocalNumbering();
+        left = new ZeroAbstractState(locals);
+        right = new ZeroAbstractState(locals);
+        leftCopy = new ZeroAbstractState(locals);
+
+        Random random = new Random(42);
+        ZeroAbstractValue[] values = ZeroAbstractValue.values();
+        for (int i = 0; i < variables; i++) {
+            String variable = "v" + i;
+            ZeroAbstractValue value = values[random.nextInt(values.length)];
+            left.setValue(variable, value);
+            leftCopy.setValue(variable, value);
+            // Cada estado deja algunas variables sin definir, como pasa al unir ramas distintas.
+            if (random.nextInt(4) != 0) {
+                right.setValue(variable, values[random.nextInt(values.length)]);
+            }
+        }
+    }
+
+    @Benchmark
+    public ZeroAbstractState union() {
+        return left.union(right);
+    }
+
+    @Benchmark
+    public ZeroAbstractState putAll() {
+        ZeroAbstractState state = new ZeroAbstractState(locals);
+        state.copyFrom(left);
+        state.putAll(right);
+        return state;
+    }
+
+    @Benchmark
+    public void equalsSameValues(Blackhole blackhole) {
+        blackhole.consume(left.equals(leftCopy));
+    }
+
+    @Benchmark
+    public void equalsDifferentValues(Blackhole blackhole) {
+        blackhole.consume(left.equals(right));
+    }
+}
@@ -0,0 +1,91 @@
+package inge2.dataflow.zeroanalysis;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the table-driven {@link ZeroAbstractValue} operations against the former string-comparison implementation.
+ * Each invocation applies the operation to {@link #PAIRS} random operand pairs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZeroAbstractValueBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    private final ZeroAbstractValue[] left = new ZeroAbstractValue[PAIRS];
+    private final ZeroAbstractValue[] right = new ZeroAbstractValue[PAIRS];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        ZeroAbstractValue[] values = ZeroAbstractValue.values();
+        for (int i = 0; i < PAIRS; i++) {
+            left[i] = values[random.nextInt(values.length)];
+            right[i] = values[random.nextInt(values.length)];
+        }
+    }
+
+    @Benchmark
+    public void tableAdd(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(left[i].add(right[i]));
+        }
+    }
+
+    @Benchmark
+    public void legacyAdd(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(LegacyZeroAbstractValueOperations.add(left[i], right[i]));
+        }
+    }
+
+    @Benchmark
+    public void tableMultiplyBy(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(left[i].multiplyBy(right[i]));
+        }
+    }
+
+    @Benchmark
+    public void legacyMultiplyBy(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(LegacyZeroAbstractValueOperations.multiplyBy(left[i], right[i]));
+        }
+    }
+
+    @Benchmark
+    public void tableDivideBy(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(left[i].divideBy(right[i]));
+        }
+    }
+
+    @Benchmark
+    public void legacyDivideBy(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(LegacyZeroAbstractValueOperations.divideBy(left[i], right[i]));
+        }
+    }
+
+    @Benchmark
+    public void tableMerge(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(left[i].merge(right[i]));
+        }
+    }
+
+    @Benchmark
+    public void legacyMerge(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(LegacyZeroAbstractValueOperations.merge(left[i], right[i]));
+        }
+    }
+}
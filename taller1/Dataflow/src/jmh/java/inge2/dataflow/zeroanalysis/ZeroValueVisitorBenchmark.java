@@ -0,0 +1,102 @@
+package inge2.dataflow.zeroanalysis;
+
+import org.openjdk.jmh.annotations.*;
+import soot.G;
+import soot.IntType;
+import soot.Local;
+import soot.Value;
+import soot.grimp.Grimp;
+import soot.jimple.IntConstant;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ZeroValueVisitor} on expression trees of {@link #depth} nested binary operations. Jimple only
+ * has three-address expressions, so the trees are built with Grimp, whose expressions can nest.
+ * A single visitor is reset for every evaluation, as the analysis does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZeroValueVisitorBenchmark {
+
+    private static final int LOCALS = 16;
+
+    @Param({"8", "64", "512"})
+    public int depth;
+
+    private Value leftDeepExpression;
+    private Value balancedExpression;
+    private ZeroAbstractState state;
+    private ZeroValueVisitor visitor;
+
+    @Setup
+    public void setup() {
+        G.reset();
+        Random random = new Random(42);
+
+        Local[] locals = new Local[LOCALS];
+        state = new ZeroAbstractState();
+        ZeroAbstractValue[] values = {ZeroAbstractValue.NOT_ZERO, ZeroAbstractValue.ZERO, ZeroAbstractValue.MAYBE_ZERO};
+        for (int i = 0; i < LOCALS; i++) {
+            locals[i] = Grimp.v().newLocal("l" + i, IntType.v());
+            state.setValue(locals[i].getName(), values[random.nextInt(values.length)]);
+        }
+
+        // ((((l0 op l1) op l2) op l3) ...), con depth operaciones.
+        Value expression = locals[0];
+        for (int i = 1; i <= depth; i++) {
+            expression = operation(random, expression, operand(random, locals));
+        }
+        leftDeepExpression = expression;
+        balancedExpression = balanced(random, locals, depth);
+
+        visitor = new ZeroValueVisitor(state);
+    }
+
+    @Benchmark
+    public ZeroAbstractValue leftDeep() {
+        return visitor.reset(state).visit(leftDeepExpression).done();
+    }
+
+    @Benchmark
+    public ZeroAbstractValue balanced() {
+        return visitor.reset(state).visit(balancedExpression).done();
+    }
+
+    /**
+     * Builds a balanced tree with the given amount of operations.
+     */
+    private static Value balanced(Random random, Local[] locals, int operations) {
+        if (operations == 0) {
+            return operand(random, locals);
+        }
+        int left = (operations - 1) / 2;
+        return operation(random, balanced(random, locals, left), balanced(random, locals, operations - 1 - left));
+    }
+
+    private static Value operand(Random random, Local[] locals) {
+        // Una de cada cuatro hojas es una constante, el resto son variables.
+        if (random.nextInt(4) == 0) {
+            return IntConstant.v(random.nextInt(3));
+        }
+        return locals[random.nextInt(locals.length)];
+    }
+
+    private static Value operation(Random random, Value left, Value right) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return Grimp.v().newAddExpr(left, right);
+            case 1:
+                return Grimp.v().newSubExpr(left, right);
+            case 2:
+                return Grimp.v().newMulExpr(left, right);
+            default:
+                return Grimp.v().newDivExpr(left, right);
+        }
+    }
+}
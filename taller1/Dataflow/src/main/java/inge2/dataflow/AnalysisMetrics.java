@@ -0,0 +1,196 @@
+package inge2.dataflow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class keeps the {@link MethodMetrics} of every method analyzed in a run. It may be called from the threads
+ * Soot uses to transform the bodies.
+ * The metrics are available through JMX while the JVM runs, and can be written at the end of a run to the file named
+ * by the {@link #SYSTEM_PROPERTY} system property: as JSON if its name ends with ".json", as CSV otherwise.
+ */
+public class AnalysisMetrics implements AnalysisMetricsMXBean {
+
+    public static final String OBJECT_NAME = "inge2.dataflow:type=AnalysisMetrics";
+
+    /**
+     * The system property with the path of the summary.
+     */
+    public static final String SYSTEM_PROPERTY = "metricsOutput";
+
+    private static final String CSV_HEADER = "method,cfgNanos,fixpointNanos,flowThroughCount,mergeCount,maxStateSize,"
+            + "allocatedStates,allocatedBytes";
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    /**
+     * Records the metrics of a method, replacing the ones of a previous analysis of the same method.
+     */
+    public void record(MethodMetrics metrics) {
+        this.methods.put(metrics.getMethod(), metrics);
+    }
+
+    /**
+     * Returns the metrics of a method.
+     * @param methodSignature the signature of the method.
+     * @return the metrics, or null if the method was not analyzed.
+     */
+    public MethodMetrics get(String methodSignature) {
+        return this.methods.get(methodSignature);
+    }
+
+    @Override
+    public int getAnalyzedMethodCount() {
+        return this.methods.size();
+    }
+
+    @Override
+    public long getTotalCfgNanos() {
+        return this.methods.values().stream().mapToLong(MethodMetrics::getCfgNanos).sum();
+    }
+
+    @Override
+    public long getTotalFixpointNanos() {
+        return this.methods.values().stream().mapToLong(MethodMetrics::getFixpointNanos).sum();
+    }
+
+    @Override
+    public long getTotalFlowThroughCount() {
+        return this.methods.values().stream().mapToLong(MethodMetrics::getFlowThroughCount).sum();
+    }
+
+    @Override
+    public long getTotalMergeCount() {
+        return this.methods.values().stream().mapToLong(MethodMetrics::getMergeCount).sum();
+    }
+
+    @Override
+    public long getTotalAllocatedBytes() {
+        return this.methods.values().stream().mapToLong(m -> Math.max(0, m.getAllocatedBytes())).sum();
+    }
+
+    @Override
+    public List<MethodMetrics> getMethods() {
+        List<MethodMetrics> sorted = new ArrayList<>(this.methods.values());
+        sorted.sort(Comparator.comparingLong(MethodMetrics::getTotalNanos).reversed()
+                .thenComparing(MethodMetrics::getMethod));
+        return sorted;
+    }
+
+    @Override
+    public void clear() {
+        this.methods.clear();
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server, unless some metrics are already registered.
+     */
+    public synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Writes the summary to the file named by the {@link #SYSTEM_PROPERTY} system property, if it is set.
+     */
+    public void writeToSystemProperty() {
+        String path = System.getProperty(SYSTEM_PROPERTY);
+        if (path != null && !path.isEmpty()) {
+            this.write(Paths.get(path));
+        }
+    }
+
+    /**
+     * Writes the summary of every method, the most expensive first: as JSON if the file name ends with ".json", as CSV
+     * otherwise.
+     * @param path the file to write.
+     */
+    public void write(Path path) {
+        boolean json = path.getFileName().toString().endsWith(".json");
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            if (json) {
+                writeJson(writer);
+            } else {
+                writeCsv(writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + path, e);
+        }
+    }
+
+    private void writeCsv(BufferedWriter writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.newLine();
+        for (MethodMetrics metrics : this.getMethods()) {
+            // Las firmas de Soot tienen comas entre los parámetros.
+            writer.write("\"" + metrics.getMethod().replace("\"", "\"\"") + "\"," + metrics.getCfgNanos()
+                    + "," + metrics.getFixpointNanos() + "," + metrics.getFlowThroughCount()
+                    + "," + metrics.getMergeCount() + "," + metrics.getMaxStateSize()
+                    + "," + metrics.getAllocatedStates() + "," + metrics.getAllocatedBytes());
+            writer.newLine();
+        }
+    }
+
+    private void writeJson(BufferedWriter writer) throws IOException {
+        writer.write("{\"analyzedMethods\":" + this.getAnalyzedMethodCount()
+                + ",\"totalCfgNanos\":" + this.getTotalCfgNanos()
+                + ",\"totalFixpointNanos\":" + this.getTotalFixpointNanos()
+                + ",\"totalFlowThroughCount\":" + this.getTotalFlowThroughCount()
+                + ",\"totalMergeCount\":" + this.getTotalMergeCount()
+                + ",\"totalAllocatedBytes\":" + this.getTotalAllocatedBytes()
+                + ",\"methods\":[");
+        String separator = "";
+        for (MethodMetrics metrics : this.getMethods()) {
+            writer.write(separator);
+            writer.newLine();
+            writer.write("{\"method\":" + FindingsWriter.quote(metrics.getMethod())
+                    + ",\"cfgNanos\":" + metrics.getCfgNanos()
+                    + ",\"fixpointNanos\":" + metrics.getFixpointNanos()
+                    + ",\"flowThroughCount\":" + metrics.getFlowThroughCount()
+                    + ",\"mergeCount\":" + metrics.getMergeCount()
+                    + ",\"maxStateSize\":" + metrics.getMaxStateSize()
+                    + ",\"allocatedStates\":" + metrics.getAllocatedStates()
+                    + ",\"allocatedBytes\":" + metrics.getAllocatedBytes() + "}");
+            separator = ",";
+        }
+        writer.newLine();
+        writer.write("]}");
+        writer.newLine();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if the JVM does not measure them.
+     */
+    public static long currentThreadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
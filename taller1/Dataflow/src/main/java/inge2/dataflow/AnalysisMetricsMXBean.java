@@ -0,0 +1,29 @@
+package inge2.dataflow;
+
+import java.util.List;
+
+/**
+ * The JMX view of the {@link AnalysisMetrics} of the current or last run, registered as
+ * {@value AnalysisMetrics#OBJECT_NAME}.
+ */
+public interface AnalysisMetricsMXBean {
+
+    int getAnalyzedMethodCount();
+
+    long getTotalCfgNanos();
+
+    long getTotalFixpointNanos();
+
+    long getTotalFlowThroughCount();
+
+    long getTotalMergeCount();
+
+    long getTotalAllocatedBytes();
+
+    /**
+     * Returns the metrics of every analyzed method, the most expensive first.
+     */
+    List<MethodMetrics> getMethods();
+
+    void clear();
+}
@@ -0,0 +1,117 @@
+package inge2.dataflow;
+
+import inge2.dataflow.zeroanalysis.DivisionByZeroFinding;
+import inge2.dataflow.zeroanalysis.DivisionByZeroRegistry;
+import inge2.dataflow.zeroanalysis.ZeroAbstractValue;
+import org.slf4j.Logger;
+import soot.Unit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A local server that answers division by zero queries from a {@link WarmSession}, so that only the first query pays
+ * for the Soot startup. It listens on localhost and reads one command per line:
+ * <ul>
+ *     <li><code>analyze &lt;class&gt;</code>: analyzes the class and answers one
+ *     <code>&lt;method signature&gt;\t&lt;line&gt;\t&lt;expression&gt;</code> line per possible division by zero,
+ *     followed by <code>done &lt;amount&gt;</code>.</li>
+ *     <li><code>divisor &lt;class&gt; &lt;line&gt;</code>: answers if the divisor of each division of the line may be
+ *     zero, without analyzing the whole methods, with one
+ *     <code>&lt;method signature&gt;\t&lt;line&gt;\t&lt;expression&gt;\t&lt;divisor value&gt;</code> line per
+ *     division, followed by <code>done &lt;amount&gt;</code>.</li>
+ *     <li><code>quit</code>: closes the connection.</li>
+ * </ul>
+ * Errors are answered with a single <code>error &lt;message&gt;</code> line.
+ * Methods are analyzed one by one, see {@link Launcher#analyzeClass(String)}.
+ * The Soot class path is read from the system property "sootClassPath".
+ */
+public class AnalysisServer {
+    private final static Logger LOGGER = getLogger(AnalysisServer.class);
+
+    public static final int DEFAULT_PORT = 7070;
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        // Start the session before accepting connections, so the first query is fast too.
+        WarmSession.shared(System.getProperty("sootClassPath"));
+
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            LOGGER.info("Listening on {}:{}", server.getInetAddress().getHostAddress(), server.getLocalPort());
+            while (true) {
+                try (Socket client = server.accept()) {
+                    serve(client);
+                } catch (IOException e) {
+                    LOGGER.warn("Connection closed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void serve(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(client.getOutputStream(), true);
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] command = line.trim().split("\\s+");
+            if ("quit".equals(command[0])) {
+                return;
+            }
+
+            if ("analyze".equals(command[0]) && command.length == 2) {
+                try {
+                    Launcher.analyzeClass(command[1]);
+                    out.println(describeFindings(Launcher.getRegistry()));
+                } catch (RuntimeException e) {
+                    out.println("error " + e.getMessage());
+                }
+            } else if ("divisor".equals(command[0]) && command.length == 3) {
+                try {
+                    int lineNumber = Integer.parseInt(command[2]);
+                    out.println(describeDivisors(Launcher.queryDivisors(command[1], lineNumber), lineNumber));
+                } catch (RuntimeException e) {
+                    out.println("error " + e.getMessage());
+                }
+            } else {
+                out.println("error unknown command: " + line);
+            }
+        }
+    }
+
+    private static String describeFindings(DivisionByZeroRegistry registry) {
+        StringBuilder builder = new StringBuilder();
+        int count = 0;
+        for (String method : new TreeSet<>(registry.getAnalyzedMethods())) {
+            for (DivisionByZeroFinding finding : registry.getFindings(method)) {
+                builder.append(method).append('\t').append(finding.getLine()).append('\t').append(finding.getExpression()).append('\n');
+                count++;
+            }
+        }
+        return builder.append("done ").append(count).toString();
+    }
+
+    private static String describeDivisors(Map<String, Map<Unit, ZeroAbstractValue>> divisors, int lineNumber) {
+        StringBuilder builder = new StringBuilder();
+        int count = 0;
+        for (Map.Entry<String, Map<Unit, ZeroAbstractValue>> method : divisors.entrySet()) {
+            for (Map.Entry<Unit, ZeroAbstractValue> division : method.getValue().entrySet()) {
+                builder.append(method.getKey()).append('\t').append(lineNumber).append('\t').append(division.getKey())
+                        .append('\t').append(division.getValue()).append('\n');
+                count++;
+            }
+        }
+        return builder.append("done ").append(count).toString();
+    }
+}
@@ -0,0 +1,125 @@
+package inge2.dataflow;
+
+import inge2.dataflow.zeroanalysis.DivisionByZeroFinding;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class streams the possible divisions by zero as JSON Lines, one object per finding:
+ * <pre>{"method":"&lt;A: int f(int)&gt;","line":7,"expression":"j = m / x"}</pre>
+ * The findings of each method are flushed as soon as its body is analyzed, so a consumer can follow the file while
+ * Soot is still running. It may be called from the threads Soot uses to transform the bodies.
+ */
+public class FindingsWriter implements Closeable {
+
+    /**
+     * The system property with the path of the JSON Lines file. When it is set, no Jimple output is needed.
+     */
+    public static final String SYSTEM_PROPERTY = "findingsOutput";
+
+    private final Writer writer;
+
+    /**
+     * Creates a writer that writes into the given one, flushing it after each method.
+     * @param writer the destination of the lines, usually buffered.
+     */
+    public FindingsWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the file named by the {@link #SYSTEM_PROPERTY} system property, replacing its contents.
+     * @return the writer, or null if the property is not set.
+     */
+    public static FindingsWriter fromSystemProperty() {
+        String path = System.getProperty(SYSTEM_PROPERTY);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return new FindingsWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + path, e);
+        }
+    }
+
+    /**
+     * Writes one line for each possible division by zero of a method, in line order. The findings of the same line
+     * keep their order.
+     * @param methodSignature the signature of the method.
+     * @param findings the possible divisions by zero.
+     */
+    public synchronized void write(String methodSignature, List<DivisionByZeroFinding> findings) {
+        List<DivisionByZeroFinding> sorted = new ArrayList<>(findings);
+        sorted.sort(Comparator.comparingInt(DivisionByZeroFinding::getLine));
+        StringBuilder lines = new StringBuilder();
+        for (DivisionByZeroFinding finding : sorted) {
+            lines.append("{\"method\":").append(quote(methodSignature))
+                    .append(",\"line\":").append(finding.getLine())
+                    .append(",\"expression\":").append(quote(finding.getExpression())).append("}\n");
+        }
+        if (lines.length() > 0) {
+            this.append(lines);
+        }
+    }
+
+    /**
+     * Writes the given lines and flushes them.
+     */
+    private void append(CharSequence lines) {
+        try {
+            this.writer.append(lines);
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     * Returns the given string as a JSON string literal.
+     */
+    static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
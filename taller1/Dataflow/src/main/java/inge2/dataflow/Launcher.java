@@ -1,13 +1,41 @@
 package inge2.dataflow;
 
+import inge2.dataflow.util.StreamUtils;
+import inge2.dataflow.util.soot.CfgFlavour;
+import inge2.dataflow.util.soot.UnitGraphProvider;
+import inge2.dataflow.util.visitor.UnsupportedValuePolicy;
+import inge2.dataflow.zeroanalysis.CallGraphAlgorithm;
 import inge2.dataflow.zeroanalysis.DivisionByZeroAnalysis;
+import inge2.dataflow.zeroanalysis.DivisionByZeroCache;
+import inge2.dataflow.zeroanalysis.DivisionByZeroFinding;
+import inge2.dataflow.zeroanalysis.DivisionByZeroRegistry;
+import inge2.dataflow.zeroanalysis.DivisionByZeroTag;
+import inge2.dataflow.zeroanalysis.DivisorQuery;
+import inge2.dataflow.zeroanalysis.MethodSummaries;
+import inge2.dataflow.zeroanalysis.ZeroAbstractValue;
+import inge2.dataflow.zeroanalysis.ZeroAnalysisSolver;
 import org.slf4j.Logger;
 import soot.*;
+import soot.options.Options;
 import soot.tagkit.LineNumberTag;
-import soot.tagkit.StringTag;
-import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -19,43 +47,284 @@ public class Launcher {
 
     public static final String DIVISION_BY_ZERO_SOOT_PHASE_NAME = "jtp.DivisionByZeroAnalysis";
 
-    private static DivisionByZeroAnalysis lastDivisionByZeroAnalysis;
+    public static final String METHOD_SUMMARIES_SOOT_PHASE_NAME = "wjtp.ZeroSummaries";
+
+    private static volatile DivisionByZeroAnalysis lastDivisionByZeroAnalysis;
+
+    /**
+     * The results of every method analyzed in the last run. Soot analyzes the classes in parallel.
+     */
+    private static final DivisionByZeroRegistry REGISTRY = new DivisionByZeroRegistry();
+
+    /**
+     * The cost of every method analyzed in the last run, also available through JMX.
+     */
+    private static final AnalysisMetrics METRICS = new AnalysisMetrics();
+
+    /**
+     * The JSON Lines output of the current run, or null if the "findingsOutput" system property is not set.
+     */
+    private static volatile FindingsWriter findingsWriter;
+
+    /**
+     * The result cache of the current run, or null if the "zeroAnalysis.cacheDir" system property is not set.
+     */
+    private static volatile DivisionByZeroCache cache;
+
+    /**
+     * The control flow graphs of the last run, of the flavour chosen by the "cfg" system property. The summaries and
+     * the analysis of each body share them. The graph of a body is released once the body is analyzed, and the rest
+     * when the run ends; only the counters outlive the run.
+     */
+    private static volatile UnitGraphProvider graphs = new UnitGraphProvider(CfgFlavour.EXCEPTIONAL);
+
+    /**
+     * The summaries of the methods of the current run, or null if the "zeroAnalysis.callGraph" system property is not
+     * set. They are computed in the Whole Jimple Transform Pack, before the bodies are analyzed.
+     */
+    private static volatile MethodSummaries summaries;
 
     public static void main(String[] args) {
+        withRunOutputs(args, () -> runSoot(args));
+    }
+
+    private static void runSoot(String[] args) {
         // Reset soot in case we are calling it multiple times.
         soot.G.reset();
         setupDivisionByZeroAnalysis();
         // Run Soot.
-        soot.Main.main(args);
+        soot.Main.main(withCallGraphArgs(args));
+    }
+
+    /**
+     * Adds the Soot arguments that build the call graph chosen by the "zeroAnalysis.callGraph" system property, if any.
+     * Every method of the application classes is an entry point, and the library is not loaded.
+     */
+    private static String[] withCallGraphArgs(String[] args) {
+        CallGraphAlgorithm callGraph = CallGraphAlgorithm.fromSystemProperty();
+        if (callGraph == null) {
+            return args;
+        }
+
+        List<String> sootArgs = new ArrayList<>(Arrays.asList(
+                "-w",
+                "-no-bodies-for-excluded",
+                "-allow-phantom-refs",
+                "-p", "cg", "all-reachable:true",
+                "-p", callGraph.getPhaseName(), "on",
+                "-p", METHOD_SUMMARIES_SOOT_PHASE_NAME, "on"
+        ));
+        sootArgs.addAll(Arrays.asList(args));
+        return sootArgs.toArray(new String[0]);
     }
 
     /**
      * Runs the division by zero analysis on a given target class.
+     * The class is analyzed in the {@link WarmSession} shared by the JVM, so the Soot Scene is only built by the first
+     * call. No Jimple output is written; use {@link #main(String[])} for a regular Soot run.
+     * The warm session builds no call graph, so the analysis is always intraprocedural: when the
+     * "zeroAnalysis.callGraph" system property is set, a warning is logged and the property is ignored.
      * The Soot class path is read from the system property "sootClassPath".
      * @param targetClass the target class to analyze.
      */
     public static void analyzeClass(String targetClass) {
+        if (CallGraphAlgorithm.fromSystemProperty() != null) {
+            LOGGER.warn("Warm sessions do not build call graphs, {} is analyzed intraprocedurally", targetClass);
+        }
+        String sootClassPath = System.getProperty("sootClassPath");
+        withRunOutputs(WarmSession.sootArgs(sootClassPath), () -> WarmSession.analyzeClass(sootClassPath, targetClass));
+    }
+
+    /**
+     * Answers, for every division of a source line of a class, if its divisor may be zero. Each division is answered
+     * by a {@link DivisorQuery}, which only evaluates the definitions that may affect the divisor instead of analyzing
+     * the whole method. The class is loaded in the {@link WarmSession} shared by the JVM, and the registry is not
+     * changed.
+     * The Soot class path is read from the system property "sootClassPath".
+     * @param targetClass the class.
+     * @param lineNumber the source line.
+     * @return the value of the divisor of each division of the line, by method signature, in body order.
+     */
+    public static Map<String, Map<Unit, ZeroAbstractValue>> queryDivisors(String targetClass, int lineNumber) {
+        Map<String, Map<Unit, ZeroAbstractValue>> divisors = new LinkedHashMap<>();
+        for (Body body : WarmSession.loadClass(System.getProperty("sootClassPath"), targetClass)) {
+            DivisorQuery query = null;
+            for (Unit unit : body.getUnits()) {
+                if (unit.getJavaSourceStartLineNumber() == lineNumber && DivisorQuery.isDivision(unit)) {
+                    // El grafo solo se construye para los métodos que tienen una división en la línea.
+                    if (query == null) {
+                        query = new DivisorQuery(CfgFlavour.fromSystemProperty().build(body));
+                    }
+                    divisors.computeIfAbsent(body.getMethod().getSignature(), signature -> new LinkedHashMap<>())
+                            .put(unit, query.divisorValue(unit));
+                }
+            }
+        }
+        return divisors;
+    }
+
+    /**
+     * Runs an analysis after clearing the registry and the metrics. During the run, the findings are streamed to the
+     * file named by the "findingsOutput" system property, and results are cached in the directory named by the
+     * "zeroAnalysis.cacheDir" system property. At the end, the metrics are written to the file named by the
+     * "metricsOutput" system property. The cache is not used by interprocedural runs, since the results of a method
+     * also depend on the methods it calls.
+     * @param sootArgs the arguments Soot runs with, which decide the Jimple the cached results are computed on.
+     * @param analysis the analysis.
+     */
+    private static void withRunOutputs(String[] sootArgs, Runnable analysis) {
+        // Si todos los métodos se sirven desde el cache no hay análisis de esta corrida para recordar.
+        lastDivisionByZeroAnalysis = null;
+        REGISTRY.clear();
+        METRICS.clear();
+        METRICS.registerMBean();
+        graphs = new UnitGraphProvider(CfgFlavour.fromSystemProperty());
+        try (FindingsWriter writer = FindingsWriter.fromSystemProperty()) {
+            findingsWriter = writer;
+            cache = DivisionByZeroCache.fromSystemProperty(ZeroAnalysisSolver.fromSystemProperty(), graphs.getFlavour(),
+                    DivisionByZeroCache.jimpleOptionsOf(sootArgs));
+            if (cache != null && CallGraphAlgorithm.fromSystemProperty() != null) {
+                LOGGER.warn("The result cache is not used by interprocedural analyses");
+                cache = null;
+            }
+            analysis.run();
+            LOGGER.info("Found {} possible divisions by zero in {} methods", REGISTRY.getFindingsCount(),
+                    REGISTRY.getAnalyzedMethods().size());
+            if (cache != null) {
+                LOGGER.info("Served {} methods from the result cache, analyzed {}", cache.getHits(), cache.getMisses());
+            }
+            LOGGER.info("Built {} {} control flow graphs in {} ms, reused {}", graphs.getBuiltGraphs(),
+                    graphs.getFlavour().name().toLowerCase(Locale.ROOT), graphs.getBuildNanos() / 1_000_000,
+                    graphs.getReusedGraphs());
+            LOGGER.info("Spent {} ms building control flow graphs and {} ms reaching fixpoints",
+                    METRICS.getTotalCfgNanos() / 1_000_000, METRICS.getTotalFixpointNanos() / 1_000_000);
+            METRICS.writeToSystemProperty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            findingsWriter = null;
+            cache = null;
+            summaries = null;
+            graphs.clear();
+        }
+    }
+
+    /**
+     * Runs the division by zero analysis on every class of a jar or class directory, without writing any output.
+     * Soot transforms the bodies of different classes on a pool of the given amount of threads.
+     * The results of each method can be read from {@link #getRegistry()}.
+     * The Soot class path is read from the system property "sootClassPath".
+     * @param processDir the jar or class directory to analyze.
+     * @param threads the amount of threads, or 0 to use one per available processor.
+     */
+    public static void analyzeProcessDir(String processDir, int threads) {
         String sootClassPath = System.getProperty("sootClassPath");
 
-        String[] sootArgs = {
-                targetClass,
+        List<String> sootArgs = new ArrayList<>(Arrays.asList(
+                "-process-dir", processDir,
                 "-cp", sootClassPath,
-                "-f", "J",
-                "-v",
-                "-print-tags",
+                "-f", "n",
+                "-allow-phantom-refs",
+                "-num-threads", Integer.toString(threads > 0 ? threads : Runtime.getRuntime().availableProcessors()),
                 "-p", "jtp.DivisionByZeroAnalysis", "on",
                 "-p", "jb", "use-original-names:true",
                 "-p", "jb.ls", "off",
                 "-p", "jb.sils", "off",
                 "-p", "jb.ule", "off",
                 "-p", "jb.cp", "off",
-                "-keep-line-number",
-        };
+                "-keep-line-number"
+        ));
+
+        withRunOutputs(sootArgs.toArray(new String[0]), () -> {
+            // Los resultados de las clases que están completamente en el cache se reportan sin que Soot las cargue.
+            if (cache != null) {
+                for (String className : replayFullyCachedClasses(processDir)) {
+                    sootArgs.add("-exclude");
+                    sootArgs.add(className);
+                }
+            }
+            runSoot(sootArgs.toArray(new String[0]));
+        });
+    }
+
+    /**
+     * Reports the cached results of the classes of a jar or class directory whose methods are all in the cache.
+     * @param processDir the jar or class directory.
+     * @return the names of the reported classes.
+     */
+    private static List<String> replayFullyCachedClasses(String processDir) {
+        List<String> replayed = new ArrayList<>();
+        for (byte[] classFile : readClassFiles(processDir)) {
+            String className = cache.scanClass(classFile);
+            if (cache.isFullyCached(className)) {
+                for (String signature : cache.getScannedMethods(className)) {
+                    reportFindings(signature, cache.get(signature).getFindings());
+                }
+                replayed.add(className);
+            }
+        }
+        LOGGER.info("{} classes of {} are fully cached", replayed.size(), processDir);
+        return replayed;
+    }
 
-        Launcher.main(sootArgs);
+    /**
+     * Returns the contents of every class file of a jar or class directory.
+     */
+    private static List<byte[]> readClassFiles(String processDir) {
+        List<byte[]> classFiles = new ArrayList<>();
+        Path path = Paths.get(processDir);
+        try {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    for (Path file : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".class"))::iterator) {
+                        classFiles.add(Files.readAllBytes(file));
+                    }
+                }
+            } else {
+                try (ZipFile jar = new ZipFile(path.toFile())) {
+                    for (ZipEntry entry : Collections.list(jar.entries())) {
+                        if (entry.getName().endsWith(".class")) {
+                            try (InputStream in = jar.getInputStream(entry)) {
+                                classFiles.add(StreamUtils.readAllBytes(in));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the classes of " + processDir, e);
+        }
+        return classFiles;
+    }
+
+    /**
+     * Records the findings of a method in the registry and streams them to the findings output, if any.
+     */
+    private static void reportFindings(String methodSignature, List<DivisionByZeroFinding> findings) {
+        REGISTRY.record(methodSignature, findings);
+        FindingsWriter writer = findingsWriter;
+        if (writer != null) {
+            writer.write(methodSignature, findings);
+        }
     }
 
     public static void setupDivisionByZeroAnalysis() {
+        // In whole program mode, the summaries of every method are computed from the call graph before the bodies
+        // are analyzed, so that each analysis can resolve the values returned by the methods it calls.
+        PackManager.v().getPack("wjtp").add(new Transform(METHOD_SUMMARIES_SOOT_PHASE_NAME, new SceneTransformer() {
+            @Override
+            protected void internalTransform(String phaseName, Map<String, String> options) {
+                List<SootMethod> methods = new ArrayList<>();
+                for (SootClass sootClass : Scene.v().getApplicationClasses()) {
+                    methods.addAll(sootClass.getMethods());
+                }
+                int threads = Options.v().num_threads();
+                summaries = MethodSummaries.compute(Scene.v().getCallGraph(), methods, graphs,
+                        ZeroAnalysisSolver.fromSystemProperty(),
+                        threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            }
+        }));
+
         Pack jtpPack = PackManager.v().getPack("jtp");
 
         // Add the analysis to the Jimple Transform Pack. This will make it run after the Jimple generation when Soot executes.
@@ -71,19 +340,56 @@ public class Launcher {
              */
             @Override
             protected void internalTransform(Body body, String phaseName, Map<String, String> options) {
-                if ("<init>".equals(body.getMethod().getName())) {
-                    // Ignore constructors.
-                    return;
-                }
+                // If the method did not change since a cached run, its results are served without building its CFG.
+                DivisionByZeroCache currentCache = cache;
+                DivisionByZeroCache.Entry cached = currentCache == null ? null : currentCache.get(body.getMethod());
+                DivisionByZeroAnalysis analysis = null;
+                List<DivisionByZeroFinding> findings;
+                if (cached != null) {
+                    findings = cached.getFindings();
+                } else {
+                    // Run the DivisionByZeroAnalysis on the body, with the solver chosen by the "zeroAnalysis.solver" property.
+                    // By default we use the ExceptionalUnitGraph to build a control flow graph that takes exceptions into
+                    // account; the "cfg" property chooses a cheaper one. A graph built for the summaries is reused.
+                    // This method may be called from several threads at once, so the analysis is kept in a local variable.
+                    long allocatedBefore = AnalysisMetrics.currentThreadAllocatedBytes();
+                    UnitGraph graph = graphs.getGraph(body);
+                    // El grafo pudo haberlo construido la fase de resúmenes: se reporta lo que tardó entonces.
+                    long cfgNanos = graphs.getBuildNanos(body);
+                    long fixpointStart = System.nanoTime();
+                    analysis = new DivisionByZeroAnalysis(graph, UnsupportedValuePolicy.TOP,
+                            ZeroAnalysisSolver.fromSystemProperty(), null, summaries);
+                    long fixpointEnd = System.nanoTime();
+                    long allocatedAfter = AnalysisMetrics.currentThreadAllocatedBytes();
+                    // Los resúmenes se calculan en wjtp, antes de jtp, así que nadie más va a pedir este grafo.
+                    graphs.release(body);
+                    METRICS.record(new MethodMetrics(body.getMethod().getSignature(), cfgNanos,
+                            fixpointEnd - fixpointStart, analysis.getFlowThroughCount(), analysis.getMergeCount(),
+                            analysis.getMaxStateSize(), analysis.getAllocatedStates(),
+                            allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore));
+                    LOGGER.debug("Analyzed {} with {} flow function evaluations", body.getMethod().getSignature(),
+                            analysis.getFlowThroughCount());
+                    findings = analysis.getFindings();
+                    if (currentCache != null) {
+                        currentCache.put(body.getMethod(), analysis);
+                    }
 
-                // Run the DivisionByZeroAnalysis on the body.
-                // We use the ExceptionalUnitGraph to build a control flow graph that takes exceptions into account.
-                lastDivisionByZeroAnalysis = new DivisionByZeroAnalysis(new ExceptionalUnitGraph(body));
+                    if (!"<init>".equals(body.getMethod().getName())) {
+                        // Constructors are analyzed too, but they are not kept as the last analysis.
+                        lastDivisionByZeroAnalysis = analysis;
+                    }
+                }
+                reportFindings(body.getMethod().getSignature(), findings);
 
                 // A Unit is a code fragment such as an assignment, a method call, a return statement, etc.
                 // For each unit in the body, check if it is offending (i.e., if it is a division by zero).
                 for (Unit unit : body.getUnits()) {
-                    if (lastDivisionByZeroAnalysis.unitIsOffending(unit)) {
+                    // A body kept by a WarmSession may still have the tags of a previous analysis.
+                    unit.removeTag(DivisionByZeroTag.NAME);
+                    boolean offending = analysis != null
+                            ? analysis.unitIsOffending(unit)
+                            : findings.contains(new DivisionByZeroFinding(unit.getJavaSourceStartLineNumber(), unit.toString()));
+                    if (offending) {
                         // If the unit is offending, log it and add a tag to the unit.
                         unit.getTags()
                                 .stream()
@@ -93,7 +399,7 @@ public class Launcher {
                                 .ifPresent(lineNumberTag -> {
                                     LOGGER.error("Found a possible division by zero in line {}", lineNumberTag.getLineNumber());
                                 });
-                        unit.addTag(new StringTag("Possible division by zero here"));
+                        unit.addTag(new DivisionByZeroTag());
                     }
                 }
             }
@@ -101,10 +407,35 @@ public class Launcher {
     }
 
     /**
-     * Returns the last division by zero analysis that was run.
-     * @return a division by zero analysis, or null.
+     * Returns the last division by zero analysis run by the current or last run of the launcher. Methods served from
+     * the result cache are not analyzed, so they do not change it.
+     * @return a division by zero analysis, or null if the last run did not analyze any method.
      */
     public static DivisionByZeroAnalysis getLastDivisionByZeroAnalysis() {
         return lastDivisionByZeroAnalysis;
     }
+
+    /**
+     * Returns the results of every method analyzed in the last run, keyed by method signature.
+     * @return the registry of the last run.
+     */
+    public static DivisionByZeroRegistry getRegistry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Returns the control flow graphs built in the last run.
+     * @return the graph provider of the last run.
+     */
+    public static UnitGraphProvider getGraphs() {
+        return graphs;
+    }
+
+    /**
+     * Returns the cost of every method analyzed in the last run. Methods served from the result cache are not measured.
+     * @return the metrics of the last run.
+     */
+    public static AnalysisMetrics getMetrics() {
+        return METRICS;
+    }
 }
@@ -0,0 +1,82 @@
+package inge2.dataflow;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The cost of analyzing one method body: the time to build its control flow graph and to reach the fixpoint, the work
+ * done by the fixpoint, and the memory it allocated.
+ */
+public class MethodMetrics {
+    private final String method;
+    private final long cfgNanos;
+    private final long fixpointNanos;
+    private final long flowThroughCount;
+    private final long mergeCount;
+    private final int maxStateSize;
+    private final long allocatedStates;
+    private final long allocatedBytes;
+
+    /**
+     * @param method the signature of the method.
+     * @param cfgNanos the time to build the control flow graph.
+     * @param fixpointNanos the time to run the analysis on the graph.
+     * @param flowThroughCount the amount of flow function evaluations.
+     * @param mergeCount the amount of merges.
+     * @param maxStateSize the largest amount of variables in a state.
+     * @param allocatedStates the amount of states allocated by the analysis.
+     * @param allocatedBytes the bytes allocated by the thread while building the graph and running the analysis, or -1
+     *                       if the JVM does not measure them.
+     */
+    @ConstructorProperties({"method", "cfgNanos", "fixpointNanos", "flowThroughCount", "mergeCount", "maxStateSize",
+            "allocatedStates", "allocatedBytes"})
+    public MethodMetrics(String method, long cfgNanos, long fixpointNanos, long flowThroughCount, long mergeCount,
+                         int maxStateSize, long allocatedStates, long allocatedBytes) {
+        this.method = method;
+        this.cfgNanos = cfgNanos;
+        this.fixpointNanos = fixpointNanos;
+        this.flowThroughCount = flowThroughCount;
+        this.mergeCount = mergeCount;
+        this.maxStateSize = maxStateSize;
+        this.allocatedStates = allocatedStates;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getCfgNanos() {
+        return cfgNanos;
+    }
+
+    public long getFixpointNanos() {
+        return fixpointNanos;
+    }
+
+    public long getFlowThroughCount() {
+        return flowThroughCount;
+    }
+
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    public int getMaxStateSize() {
+        return maxStateSize;
+    }
+
+    public long getAllocatedStates() {
+        return allocatedStates;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the time to build the graph and run the analysis.
+     */
+    public long getTotalNanos() {
+        return cfgNanos + fixpointNanos;
+    }
+}
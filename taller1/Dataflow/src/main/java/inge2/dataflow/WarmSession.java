@@ -0,0 +1,185 @@
+package inge2.dataflow;
+
+import org.slf4j.Logger;
+import soot.Body;
+import soot.G;
+import soot.IFoundFile;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.SourceLocator;
+import soot.options.Options;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A Soot session that stays loaded between analyses. The Scene, with the library classes of <code>rt.jar</code>, is
+ * built once, and each analysis only resolves the requested class and runs the Jimple Transform Pack on its bodies.
+ *
+ * Before each analysis the class file of the requested class is checked: if it changed since it was loaded, the class
+ * is removed from the Scene and resolved again. Soot keeps the jars of the class path open, so a class that changed
+ * inside a jar makes the whole session start again.
+ *
+ * Only the requested classes are stamped. The classes they depend on are resolved once, and a change to one of them
+ * is only noticed when that class is requested itself, or when the session starts again.
+ *
+ * The session does not run the Whole Jimple Transform Pack, so it has no call graph nor method summaries, and the
+ * "zeroAnalysis.callGraph" system property has no effect on it.
+ */
+public class WarmSession {
+    private final static Logger LOGGER = getLogger(WarmSession.class);
+
+    private static WarmSession shared;
+
+    private final String sootClassPath;
+
+    /**
+     * The Soot globals this session was built on. {@link Launcher#main(String[])} resets them.
+     */
+    private final G globals;
+
+    /**
+     * The stamp of the class file of each loaded class, see {@link #stampOf(String)}.
+     */
+    private final Map<String, String> classStamps = new HashMap<>();
+
+    private WarmSession(String sootClassPath) {
+        this.sootClassPath = sootClassPath;
+
+        long start = System.currentTimeMillis();
+        G.reset();
+        Launcher.setupDivisionByZeroAnalysis();
+        Options.v().parse(sootArgs(sootClassPath));
+        Scene.v().loadNecessaryClasses();
+        this.globals = G.v();
+        LOGGER.info("Started a warm Soot session in {} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns the Soot arguments a session is started with.
+     * @param sootClassPath the Soot class path.
+     * @return the arguments.
+     */
+    static String[] sootArgs(String sootClassPath) {
+        return new String[]{
+                "-cp", sootClassPath,
+                "-f", "n",
+                "-p", Launcher.DIVISION_BY_ZERO_SOOT_PHASE_NAME, "on",
+                "-p", "jb", "use-original-names:true",
+                "-p", "jb.ls", "off",
+                "-p", "jb.sils", "off",
+                "-p", "jb.ule", "off",
+                "-p", "jb.cp", "off",
+                "-keep-line-number",
+        };
+    }
+
+    /**
+     * Returns the session shared by the whole JVM for the given Soot class path, starting a new one if there is none,
+     * if the class path is different, or if Soot was reset since it started.
+     * @param sootClassPath the Soot class path.
+     * @return the shared session.
+     */
+    public static synchronized WarmSession shared(String sootClassPath) {
+        if (shared == null || !shared.isUsable(sootClassPath)) {
+            shared = new WarmSession(sootClassPath);
+        }
+        return shared;
+    }
+
+    /**
+     * Runs the division by zero analysis on every method of a class, reloading it first if its class file changed.
+     * The results are available from {@link Launcher#getLastDivisionByZeroAnalysis()} and {@link Launcher#getRegistry()}.
+     * @param sootClassPath the Soot class path.
+     * @param className the class to analyze.
+     */
+    public static synchronized void analyzeClass(String sootClassPath, String className) {
+        WarmSession session = reloadIfChanged(sootClassPath, className);
+        session.analyze(className, session.stampOf(className));
+    }
+
+    /**
+     * Returns the bodies of the concrete methods of a class, reloading it first if its class file changed. No
+     * analysis is run.
+     * @param sootClassPath the Soot class path.
+     * @param className the class.
+     * @return the bodies, in the order of the methods of the class.
+     */
+    public static synchronized List<Body> loadClass(String sootClassPath, String className) {
+        WarmSession session = reloadIfChanged(sootClassPath, className);
+        List<Body> bodies = new ArrayList<>();
+        for (SootMethod method : new ArrayList<>(session.load(className, session.stampOf(className)).getMethods())) {
+            if (method.isConcrete()) {
+                bodies.add(method.retrieveActiveBody());
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * Returns the shared session, after removing the given class from it if its class file changed since it was
+     * loaded.
+     */
+    private static WarmSession reloadIfChanged(String sootClassPath, String className) {
+        WarmSession session = shared(sootClassPath);
+        String stamp = session.stampOf(className);
+        String loadedStamp = session.classStamps.get(className);
+        if (loadedStamp != null && !loadedStamp.equals(stamp)) {
+            if (stamp.startsWith("jar:")) {
+                LOGGER.info("The jar of {} changed, starting a new session", className);
+                shared = null;
+                session = shared(sootClassPath);
+            } else {
+                LOGGER.info("{} changed, reloading it", className);
+                Scene.v().removeClass(Scene.v().getSootClass(className));
+            }
+        }
+        return session;
+    }
+
+    private SootClass load(String className, String stamp) {
+        SootClass sootClass = Scene.v().forceResolve(className, SootClass.BODIES);
+        sootClass.setApplicationClass();
+        this.classStamps.put(className, stamp);
+        return sootClass;
+    }
+
+    private void analyze(String className, String stamp) {
+        SootClass sootClass = load(className, stamp);
+        for (SootMethod method : new ArrayList<>(sootClass.getMethods())) {
+            if (method.isConcrete()) {
+                // Si la clase no cambió, el cuerpo construido por un análisis anterior se reutiliza.
+                PackManager.v().getPack("jtp").apply(method.retrieveActiveBody());
+            }
+        }
+    }
+
+    private boolean isUsable(String sootClassPath) {
+        return this.globals == G.v() && this.sootClassPath.equals(sootClassPath);
+    }
+
+    /**
+     * Returns a string that changes when the class file of the given class changes: the modification time and size
+     * of the class file, or of its jar, prefixed by "jar:".
+     */
+    private String stampOf(String className) {
+        IFoundFile found = SourceLocator.v().lookupInClassPath(className.replace('.', '/') + ".class");
+        if (found == null) {
+            return "";
+        }
+        try {
+            // Para una clase dentro de un jar, el archivo es el jar.
+            File file = found.getFile();
+            return (found.isZipFile() ? "jar:" : "") + file.lastModified() + ":" + file.length();
+        } finally {
+            found.silentClose();
+        }
+    }
+}
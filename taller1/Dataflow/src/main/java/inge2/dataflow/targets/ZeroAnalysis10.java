@@ -0,0 +1,21 @@
+package inge2.dataflow.targets;
+
+public class ZeroAnalysis10 {
+    public static int identity(int n) {
+        return n;
+    }
+
+    public static int countdown(int n) {
+        if (n <= 0) {
+            return 7;
+        }
+        return countdown(n - 1);
+    }
+
+    public static int func(int m) {
+        int a = 10 / identity(1);
+        int b = 10 / identity(0);
+        int c = 10 / countdown(m);
+        return a + b + c;
+    }
+}
@@ -0,0 +1,23 @@
+package inge2.dataflow.targets;
+
+public class ZeroAnalysis11 {
+    public static int notZeroFirst(int n, int m) {
+        int x;
+        if (m > 0) {
+            x = 1;
+        } else {
+            x = 0;
+        }
+        return n / x;
+    }
+
+    public static int zeroFirst(int n, int m) {
+        int x;
+        if (m > 0) {
+            x = 0;
+        } else {
+            x = 1;
+        }
+        return n / x;
+    }
+}
@@ -0,0 +1,10 @@
+package inge2.dataflow.targets;
+
+public class ZeroAnalysis8 {
+    public static int func(String s, long l) {
+        int x = s.length();
+        int y = (int) l;
+        int j = y / x;
+        return j;
+    }
+}
@@ -0,0 +1,9 @@
+package inge2.dataflow.targets;
+
+public class ZeroAnalysis9 {
+    public static int func(int n, int m) {
+        int x = 0;
+        int j = n / x; int k = m / x;
+        return j + k;
+    }
+}
@@ -0,0 +1,27 @@
+package inge2.dataflow.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Utils file for working with {@link InputStream}s
+ */
+public class StreamUtils {
+
+    /**
+     * Reads a stream until its end. The stream is not closed.
+     * @param in the stream.
+     * @return the bytes read.
+     * @throws IOException if the stream cannot be read.
+     */
+    public static byte[] readAllBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,83 @@
+package inge2.dataflow.util.soot;
+
+import soot.Body;
+import soot.Scene;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The kinds of control flow graph an analysis can run on. They trade the precision of the exceptional flow for the
+ * cost of building the graph.
+ */
+public enum CfgFlavour {
+
+    /**
+     * An {@link ExceptionalUnitGraph}: every unit that may throw has an edge to the handlers that may catch the
+     * exception. It is the most precise graph, and the most expensive to build, since the exceptions each unit may
+     * throw are computed.
+     */
+    EXCEPTIONAL {
+        @Override
+        public UnitGraph build(Body body) {
+            return new ExceptionalUnitGraph(body);
+        }
+    },
+
+    /**
+     * A {@link BriefUnitGraph}: only the regular flow between units. Exception handlers have no predecessors, so it
+     * is only precise for bodies without traps.
+     */
+    BRIEF {
+        @Override
+        public UnitGraph build(Body body) {
+            return new BriefUnitGraph(body);
+        }
+    },
+
+    /**
+     * A {@link BriefUnitGraph} for the bodies without traps, where there is no exceptional flow to follow, and an
+     * {@link ExceptionalUnitGraph} without the edges from the units that throw for the rest.
+     */
+    PRUNED {
+        @Override
+        public UnitGraph build(Body body) {
+            if (body.getTraps().isEmpty()) {
+                return new BriefUnitGraph(body);
+            }
+            return new ExceptionalUnitGraph(body, Scene.v().getDefaultThrowAnalysis(), true);
+        }
+    };
+
+    /**
+     * The system property used by the launcher to choose the control flow graph, e.g. <code>-Dcfg=brief</code>.
+     */
+    public static final String SYSTEM_PROPERTY = "cfg";
+
+    /**
+     * Builds the control flow graph of a body.
+     * @param body the body.
+     * @return a new graph.
+     */
+    public abstract UnitGraph build(Body body);
+
+    /**
+     * Returns the flavour chosen with the {@link #SYSTEM_PROPERTY} system property, or {@link #EXCEPTIONAL} if not set.
+     * @return the flavour.
+     */
+    public static CfgFlavour fromSystemProperty() {
+        String name = System.getProperty(SYSTEM_PROPERTY);
+        if (name == null || name.isEmpty()) {
+            return EXCEPTIONAL;
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + SYSTEM_PROPERTY + " '" + name + "', expected one of "
+                    + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+        }
+    }
+}
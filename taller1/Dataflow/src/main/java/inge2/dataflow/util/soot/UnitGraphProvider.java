@@ -0,0 +1,123 @@
+package inge2.dataflow.util.soot;
+
+import soot.Body;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class builds the control flow graphs of the analyzed bodies and keeps them, so that the analyses that run on
+ * the same body share a single graph. It may be called from several threads at once.
+ *
+ * A graph is not rebuilt when its body changes, so bodies must not be transformed while the provider is in use.
+ * Launchers use a new provider for each run. They release the graph of each body once it is analyzed, and clear the
+ * provider when the run ends, so a graph is only kept while another phase may still ask for it. The counters survive
+ * both.
+ */
+public class UnitGraphProvider {
+
+    private final CfgFlavour flavour;
+
+    /**
+     * The graph of each body. Bodies are compared by identity.
+     */
+    private final Map<Body, BuiltGraph> graphs = new ConcurrentHashMap<>();
+
+    private final AtomicLong builtGraphs = new AtomicLong();
+    private final AtomicLong reusedGraphs = new AtomicLong();
+    private final AtomicLong buildNanos = new AtomicLong();
+
+    public UnitGraphProvider(CfgFlavour flavour) {
+        this.flavour = flavour;
+    }
+
+    /**
+     * This method returns the graph of a body, building it the first time it is asked for.
+     * @param body the body.
+     * @return the graph of the body.
+     */
+    public UnitGraph getGraph(Body body) {
+        BuiltGraph built = graphs.get(body);
+        if (built != null) {
+            reusedGraphs.incrementAndGet();
+            return built.graph;
+        }
+
+        // Si dos threads piden el mismo grafo a la vez, ambos lo construyen y se queda el primero.
+        long start = System.nanoTime();
+        built = new BuiltGraph(flavour.build(body), System.nanoTime() - start);
+        buildNanos.addAndGet(built.nanos);
+        builtGraphs.incrementAndGet();
+        BuiltGraph previous = graphs.putIfAbsent(body, built);
+        return previous != null ? previous.graph : built.graph;
+    }
+
+    /**
+     * This method returns the time it took to build the graph of a body, even if it was built by an earlier phase.
+     * @param body the body.
+     * @return the time in nanoseconds, or 0 if the provider does not keep a graph for the body.
+     */
+    public long getBuildNanos(Body body) {
+        BuiltGraph built = graphs.get(body);
+        return built != null ? built.nanos : 0;
+    }
+
+    /**
+     * This method forgets the graph of a body, once no other phase will ask for it.
+     * @param body the body.
+     */
+    public void release(Body body) {
+        graphs.remove(body);
+    }
+
+    /**
+     * This method forgets all the graphs. The counters are kept.
+     */
+    public void clear() {
+        graphs.clear();
+    }
+
+    /**
+     * This method returns the kind of graph this provider builds.
+     * @return the flavour.
+     */
+    public CfgFlavour getFlavour() {
+        return flavour;
+    }
+
+    /**
+     * This method returns the amount of graphs built.
+     * @return the amount of built graphs.
+     */
+    public long getBuiltGraphs() {
+        return builtGraphs.get();
+    }
+
+    /**
+     * This method returns the amount of times a graph was served without building it.
+     * @return the amount of reused graphs.
+     */
+    public long getReusedGraphs() {
+        return reusedGraphs.get();
+    }
+
+    /**
+     * This method returns the time spent building graphs.
+     * @return the time in nanoseconds.
+     */
+    public long getBuildNanos() {
+        return buildNanos.get();
+    }
+
+    private static final class BuiltGraph {
+        private final UnitGraph graph;
+        private final long nanos;
+
+        private BuiltGraph(UnitGraph graph, long nanos) {
+            this.graph = graph;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -4,49 +4,200 @@ import soot.Local;
 import soot.Value;
 import soot.jimple.*;
 
+import java.util.Arrays;
+
 /**
  * Abstract visitor implementations. Each new covered {@link Value} sub-type has to be added here.
  *
+ * Values are dispatched with a Soot {@link AbstractJimpleValueSwitch}. Values without a case are handled according to
+ * the {@link UnsupportedValuePolicy}: by default they fail with {@link VisitorNotImplementedForType}, and with
+ * {@link UnsupportedValuePolicy#TOP} they are resolved by {@link #visitTop(Value)}.
+ *
+ * By default the operands of a binary expression are visited with fresh visitors (see {@link #cloneVisitor()}).
+ * Visitors whose result only depends on the last visited value can instead override {@link #evaluatesInPlace()}, and
+ * then the operands are visited by this same visitor and their results kept in an operand stack.
+ *
  * @param <T>
  */
 public abstract class AbstractValueVisitor<T> implements ValueVisitor<T> {
 
-    @Override
-    public final ValueVisitor<T> visit(Value value) {
-        if (value instanceof IntConstant) {
-            visitIntegerConstant(((IntConstant) value).value);
-        } else if (value instanceof BinopExpr) {
-            doVisitBinaryExpression((BinopExpr) value);
-        } else if (value instanceof Local) {
-            visitLocal((Local) value);
-        } else if (value instanceof ParameterRef) {
-            visitParameterRef((ParameterRef) value);
-        } else if (value instanceof ThisRef) {
+    /**
+     * Results of the operands already visited, popped by the binary expression cases. Allocated on the first push, since
+     * visitors that clone themselves for each operand never use it.
+     */
+    private Object[] operands;
+    private int operandCount = 0;
+
+    /**
+     * What to do with the values that this visitor does not cover.
+     */
+    private UnsupportedValuePolicy unsupportedValuePolicy = UnsupportedValuePolicy.FAIL;
+
+    /**
+     * Dispatches each visited value to the corresponding visit method.
+     */
+    private final AbstractJimpleValueSwitch<Void> dispatcher = new AbstractJimpleValueSwitch<Void>() {
+        @Override
+        public void caseIntConstant(IntConstant v) {
+            visitIntegerConstant(v.value);
+        }
+
+        @Override
+        public void caseLocal(Local v) {
+            visitLocal(v);
+        }
+
+        @Override
+        public void caseParameterRef(ParameterRef v) {
+            visitParameterRef(v);
+        }
+
+        @Override
+        public void caseThisRef(ThisRef v) {
             // do nothing
-        } else {
-            throw new VisitorNotImplementedForType(value.getClass().getName());
         }
+
+        @Override
+        public void caseAddExpr(AddExpr v) {
+            visitOperands(v);
+            T rightOperand = popOperand();
+            visitAddExpression(popOperand(), rightOperand);
+        }
+
+        @Override
+        public void caseSubExpr(SubExpr v) {
+            visitOperands(v);
+            T rightOperand = popOperand();
+            visitSubExpression(popOperand(), rightOperand);
+        }
+
+        @Override
+        public void caseMulExpr(MulExpr v) {
+            visitOperands(v);
+            T rightOperand = popOperand();
+            visitMulExpression(popOperand(), rightOperand);
+        }
+
+        @Override
+        public void caseDivExpr(DivExpr v) {
+            visitOperands(v);
+            T rightOperand = popOperand();
+            visitDivExpression(popOperand(), rightOperand);
+        }
+
+        @Override
+        public void caseStaticInvokeExpr(StaticInvokeExpr v) {
+            visitInvokeExpression(v);
+        }
+
+        @Override
+        public void caseSpecialInvokeExpr(SpecialInvokeExpr v) {
+            visitInvokeExpression(v);
+        }
+
+        @Override
+        public void caseVirtualInvokeExpr(VirtualInvokeExpr v) {
+            visitInvokeExpression(v);
+        }
+
+        @Override
+        public void caseInterfaceInvokeExpr(InterfaceInvokeExpr v) {
+            visitInvokeExpression(v);
+        }
+
+        @Override
+        public void defaultCase(Object v) {
+            visitUnsupportedValue((Value) v);
+        }
+    };
+
+    @Override
+    public final ValueVisitor<T> visit(Value value) {
+        value.apply(dispatcher);
         return this;
     }
 
     public final void doVisitBinaryExpression(BinopExpr value) {
-        // Visit the left and right operands of the binary expression recursively.
-        T leftVisitorResult = cloneVisitor().visit(value.getOp1()).done();
-        T rightVisitorResult = cloneVisitor().visit(value.getOp2()).done();
-
-        if (value instanceof AddExpr) {
-            visitAddExpression(leftVisitorResult, rightVisitorResult);
-        } else if (value instanceof SubExpr) {
-            visitSubExpression(leftVisitorResult, rightVisitorResult);
-        } else if (value instanceof MulExpr) {
-            visitMulExpression(leftVisitorResult, rightVisitorResult);
-        } else if (value instanceof DivExpr) {
-            visitDivExpression(leftVisitorResult, rightVisitorResult);
+        value.apply(dispatcher);
+    }
+
+    /**
+     * Visits the left and right operands of a binary expression and pushes their results, in that order.
+     */
+    private void visitOperands(BinopExpr value) {
+        if (evaluatesInPlace()) {
+            pushOperand(visit(value.getOp1()).done());
+            pushOperand(visit(value.getOp2()).done());
+        } else {
+            pushOperand(cloneVisitor().visit(value.getOp1()).done());
+            pushOperand(cloneVisitor().visit(value.getOp2()).done());
+        }
+    }
+
+    /**
+     * Called for method invocations. Visitors that do not know anything about the invoked methods keep the default,
+     * which handles them as an unsupported value.
+     * @param invoke the invocation.
+     */
+    protected void visitInvokeExpression(InvokeExpr invoke) {
+        visitUnsupportedValue(invoke);
+    }
+
+    /**
+     * Called for the values this visitor does not cover.
+     * @param value the value.
+     */
+    protected void visitUnsupportedValue(Value value) {
+        if (unsupportedValuePolicy == UnsupportedValuePolicy.TOP) {
+            visitTop(value);
         } else {
             throw new VisitorNotImplementedForType(value.getClass().getName());
         }
     }
 
+    /**
+     * Called for the values this visitor does not cover when the policy is {@link UnsupportedValuePolicy#TOP}.
+     * Domains that support that policy must resolve the value to their top element.
+     * @param value the value.
+     */
+    protected void visitTop(Value value) {
+        throw new VisitorNotImplementedForType(value.getClass().getName());
+    }
+
+    public UnsupportedValuePolicy getUnsupportedValuePolicy() {
+        return unsupportedValuePolicy;
+    }
+
+    public void setUnsupportedValuePolicy(UnsupportedValuePolicy unsupportedValuePolicy) {
+        this.unsupportedValuePolicy = unsupportedValuePolicy;
+    }
+
+    /**
+     * Returns true if the operands of binary expressions are visited by this same visitor instead of by clones. The
+     * result of each operand is read with {@link #done()} right after visiting it, so visitors that return true must
+     * compute it from the last visited value only.
+     * @return true to visit the operands in place.
+     */
+    protected boolean evaluatesInPlace() {
+        return false;
+    }
+
+    private void pushOperand(T operand) {
+        if (operands == null) {
+            operands = new Object[8];
+        } else if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+        }
+        operands[operandCount++] = operand;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T popOperand() {
+        T operand = (T) operands[--operandCount];
+        operands[operandCount] = null;
+        return operand;
+    }
+
     protected abstract void visitLocal(Local variable);
 
     protected abstract void visitDivExpression(T leftOperand, T rightOperand);
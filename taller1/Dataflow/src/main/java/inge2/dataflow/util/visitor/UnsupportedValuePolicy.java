@@ -0,0 +1,17 @@
+package inge2.dataflow.util.visitor;
+
+/**
+ * What an {@link AbstractValueVisitor} does when it visits a {@link soot.Value} sub-type it does not cover.
+ */
+public enum UnsupportedValuePolicy {
+
+    /**
+     * Throw a {@link VisitorNotImplementedForType}.
+     */
+    FAIL,
+
+    /**
+     * Resolve the value to the top element of the domain, so the analysis can go on soundly.
+     */
+    TOP
+}
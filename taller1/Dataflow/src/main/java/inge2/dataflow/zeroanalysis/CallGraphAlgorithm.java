@@ -0,0 +1,57 @@
+package inge2.dataflow.zeroanalysis;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The call graph algorithms available for the interprocedural division by zero analysis (see {@link MethodSummaries}).
+ */
+public enum CallGraphAlgorithm {
+
+    /**
+     * Class Hierarchy Analysis: a virtual call may reach every override of the called method.
+     */
+    CHA("cg.cha"),
+
+    /**
+     * Soot's points-to analysis: a virtual call only reaches the classes its receiver may point to.
+     */
+    SPARK("cg.spark");
+
+    /**
+     * The system property used by the launcher to make the analysis interprocedural, e.g.
+     * <code>-DzeroAnalysis.callGraph=cha</code>.
+     */
+    public static final String SYSTEM_PROPERTY = "zeroAnalysis.callGraph";
+
+    private final String phaseName;
+
+    CallGraphAlgorithm(String phaseName) {
+        this.phaseName = phaseName;
+    }
+
+    /**
+     * Returns the Soot phase that builds the call graph with this algorithm.
+     * @return the phase name.
+     */
+    public String getPhaseName() {
+        return phaseName;
+    }
+
+    /**
+     * Returns the algorithm chosen with the {@link #SYSTEM_PROPERTY} system property.
+     * @return the algorithm, or null if not set, i.e. if the analysis is intraprocedural.
+     */
+    public static CallGraphAlgorithm fromSystemProperty() {
+        String name = System.getProperty(SYSTEM_PROPERTY);
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + SYSTEM_PROPERTY + " '" + name + "', expected one of "
+                    + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+        }
+    }
+}
@@ -1,13 +1,30 @@
 package inge2.dataflow.zeroanalysis;
 
+import inge2.dataflow.util.visitor.UnsupportedValuePolicy;
+import soot.Body;
 import soot.Local;
 import soot.Unit;
+import soot.ValueBox;
 import soot.jimple.DefinitionStmt;
+import soot.jimple.ReturnStmt;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.ForwardFlowAnalysis;
+import soot.toolkits.scalar.LocalDefs;
+import soot.toolkits.scalar.LocalUses;
+import soot.toolkits.scalar.SimpleLocalDefs;
+import soot.toolkits.scalar.SimpleLocalUses;
+import soot.toolkits.scalar.UnitValueBoxPair;
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class implements a may forward dataflow analysis that detects if a division by zero is possible in a given
@@ -20,10 +37,239 @@ public class DivisionByZeroAnalysis extends ForwardFlowAnalysis<Unit, ZeroAbstra
      */
     private HashMap<Unit, Boolean> possibleDivisionByZero = new HashMap<>();
 
+    /**
+     * The numbering of the body's locals, shared by every state of this analysis.
+     */
+    private final LocalNumbering locals;
+
+    /**
+     * The amount of states allocated by this analysis (see {@link #getAllocatedStates()}).
+     */
+    private long allocatedStates = 0;
+
+    /**
+     * The visitor used to evaluate the right operand of every definition, reset for each one.
+     */
+    private final ZeroValueVisitor visitor = new ZeroValueVisitor(null);
+
+    /**
+     * The amount of times the flow function was evaluated (see {@link #getFlowThroughCount()}).
+     */
+    private long flowThroughCount = 0;
+
+    /**
+     * The amount of merges of two flows, or of two values of the same local in the sparse solver.
+     */
+    private long mergeCount = 0;
+
+    /**
+     * The largest amount of defined variables in a state of this analysis.
+     */
+    private int maxStateSize = 0;
+
+    /**
+     * The solver used to compute the fixpoint.
+     */
+    private final ZeroAnalysisSolver solver;
+
+    /**
+     * For {@link ZeroAnalysisSolver#SPARSE}: the reaching definitions of each local use.
+     */
+    private LocalDefs localDefs;
+
+    /**
+     * For {@link ZeroAnalysisSolver#SPARSE}: the body being analyzed.
+     */
+    private Body body;
+
+    /**
+     * For {@link ZeroAnalysisSolver#SPARSE}: the value assigned by each definition.
+     */
+    private final Map<Unit, ZeroAbstractValue> definitionValues = new IdentityHashMap<>();
+
+    /**
+     * The index of the results, built once the fixpoint is reached.
+     */
+    private final DivisionByZeroResult result;
+
     public DivisionByZeroAnalysis(UnitGraph graph) {
+        this(graph, UnsupportedValuePolicy.TOP);
+    }
+
+    /**
+     * Creates and runs the analysis.
+     * @param graph the control flow graph of the method.
+     * @param unsupportedValuePolicy what to do with expressions the analysis does not cover (invocations, casts,
+     *                               fields, other constants...). With {@link UnsupportedValuePolicy#TOP} they are
+     *                               considered MAYBE_ZERO, with {@link UnsupportedValuePolicy#FAIL} the analysis throws.
+     */
+    public DivisionByZeroAnalysis(UnitGraph graph, UnsupportedValuePolicy unsupportedValuePolicy) {
+        this(graph, unsupportedValuePolicy, ZeroAnalysisSolver.SOOT);
+    }
+
+    /**
+     * Creates and runs the analysis.
+     * @param graph the control flow graph of the method.
+     * @param unsupportedValuePolicy what to do with expressions the analysis does not cover.
+     * @param solver the fixpoint solver to use.
+     */
+    public DivisionByZeroAnalysis(UnitGraph graph, UnsupportedValuePolicy unsupportedValuePolicy, ZeroAnalysisSolver solver) {
+        this(graph, unsupportedValuePolicy, solver, null, null);
+    }
+
+    /**
+     * Creates and runs the analysis of a method called with the given arguments, resolving the invocations it makes
+     * with the given summaries.
+     * @param graph the control flow graph of the method.
+     * @param unsupportedValuePolicy what to do with expressions the analysis does not cover.
+     * @param solver the fixpoint solver to use.
+     * @param parameterValues the value of each parameter, null for the ones that may be anything. May be null.
+     * @param summaries the summaries of the called methods, or null to consider every invocation unsupported.
+     */
+    public DivisionByZeroAnalysis(UnitGraph graph, UnsupportedValuePolicy unsupportedValuePolicy, ZeroAnalysisSolver solver,
+                                  ZeroAbstractValue[] parameterValues, MethodSummaries summaries) {
         super(graph);
+        this.locals = new LocalNumbering(graph.getBody());
+        this.visitor.setUnsupportedValuePolicy(unsupportedValuePolicy);
+        this.visitor.setCallContext(parameterValues, summaries);
+        this.solver = solver;
         // Performs the analysis and populates the possibleDivisionByZero map
-        doAnalysis();
+        if (solver == ZeroAnalysisSolver.SCC_WORKLIST) {
+            doSccWorklistAnalysis();
+        } else if (solver == ZeroAnalysisSolver.SPARSE) {
+            doSparseAnalysis(graph);
+        } else {
+            doAnalysis();
+        }
+
+        if (solver != ZeroAnalysisSolver.SPARSE) {
+            for (ZeroAbstractState out : unitToAfterFlow.values()) {
+                maxStateSize = Math.max(maxStateSize, out.size());
+            }
+        }
+
+        Set<Unit> offending = Collections.newSetFromMap(new IdentityHashMap<>());
+        offending.addAll(possibleDivisionByZero.keySet());
+        if (solver == ZeroAnalysisSolver.SPARSE) {
+            // Los estados del modo sparse se reconstruyen la primera vez que se piden.
+            Map<Unit, ZeroAbstractState> inStates = new ConcurrentHashMap<>();
+            Map<Unit, ZeroAbstractState> outStates = new ConcurrentHashMap<>();
+            result = new DivisionByZeroResult(graph, offending,
+                    unit -> inStates.computeIfAbsent(unit, this::sparseINState),
+                    unit -> outStates.computeIfAbsent(unit, this::sparseOUTState));
+        } else {
+            result = new DivisionByZeroResult(graph, offending, unitToBeforeFlow::get, unitToAfterFlow::get);
+        }
+    }
+
+    /**
+     * Computes the value of every definition by propagating values along def-use chains only. The value of a local
+     * at a use is the merge of the values of its reaching definitions, which is what a phi node of the SSA form would
+     * compute. When the value of a definition changes, only the definitions that use it are evaluated again.
+     * No IN/OUT state is kept per unit; {@link #getResult()} rebuilds them on demand from the reaching definitions.
+     */
+    private void doSparseAnalysis(UnitGraph graph) {
+        body = graph.getBody();
+        localDefs = new SimpleLocalDefs(graph);
+        LocalUses localUses = new SimpleLocalUses(graph, localDefs);
+
+        Deque<Unit> worklist = new ArrayDeque<>();
+        Set<Unit> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Unit unit : graph) {
+            if (unit instanceof DefinitionStmt) {
+                worklist.add(unit);
+                queued.add(unit);
+            }
+        }
+
+        ZeroAbstractState uses = newInitialFlow();
+        while (!worklist.isEmpty()) {
+            Unit definition = worklist.poll();
+            queued.remove(definition);
+            flowThroughCount++;
+
+            // Only the locals used by the definition are loaded in the state.
+            uses.clear();
+            for (ValueBox useBox : definition.getUseBoxes()) {
+                if (useBox.getValue() instanceof Local) {
+                    Local used = (Local) useBox.getValue();
+                    uses.setValue(used.getName(), reachingValue(used, definition));
+                }
+            }
+
+            maxStateSize = Math.max(maxStateSize, uses.size());
+
+            ZeroAbstractValue resolvedValue = visitor.reset(uses).visit(((DefinitionStmt) definition).getRightOp()).done();
+            if (visitor.getPossibleDivisionByZero()) {
+                possibleDivisionByZero.put(definition, true);
+            }
+
+            if (resolvedValue != null && resolvedValue != definitionValues.put(definition, resolvedValue)) {
+                for (UnitValueBoxPair use : localUses.getUsesOf(definition)) {
+                    if (use.getUnit() instanceof DefinitionStmt && queued.add(use.getUnit())) {
+                        worklist.add(use.getUnit());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the merge of the values of the definitions of the given local that reach the given unit, or null if
+     * none of them has a value.
+     */
+    private ZeroAbstractValue reachingValue(Local local, Unit unit) {
+        ZeroAbstractValue merged = null;
+        for (Unit definition : localDefs.getDefsOfAt(local, unit)) {
+            ZeroAbstractValue value = definitionValues.get(definition);
+            if (value != null) {
+                if (merged != null) {
+                    mergeCount++;
+                }
+                merged = merged == null ? value : merged.merge(value);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Computes the fixpoint with a worklist ordered by {@link SccWorklistOrder}. When the OUT state of a unit changes,
+     * it is joined into the IN state of each successor, and only the successors whose IN state changed are queued
+     * again.
+     */
+    private void doSccWorklistAnalysis() {
+        SccWorklistOrder order = new SccWorklistOrder(graph);
+        for (Unit unit : graph) {
+            unitToBeforeFlow.put(unit, newInitialFlow());
+            unitToAfterFlow.put(unit, newInitialFlow());
+        }
+        for (Unit head : graph.getHeads()) {
+            unitToBeforeFlow.get(head).copyFrom(entryInitialFlow());
+        }
+
+        ZeroAbstractState previous = newInitialFlow();
+        BitSet worklist = new BitSet(order.size());
+        worklist.set(0, order.size());
+
+        for (int priority = worklist.nextSetBit(0); priority >= 0; priority = worklist.nextSetBit(0)) {
+            worklist.clear(priority);
+            Unit unit = order.unitAt(priority);
+
+            ZeroAbstractState out = unitToAfterFlow.get(unit);
+            previous.copyFrom(out);
+            flowThrough(unitToBeforeFlow.get(unit), unit, out);
+            if (out.equals(previous)) {
+                continue;
+            }
+
+            // Los estados solo crecen, así que alcanza con unir el OUT nuevo al IN de cada sucesor.
+            for (Unit successor : graph.getSuccsOf(unit)) {
+                mergeCount++;
+                if (unitToBeforeFlow.get(successor).joinWith(out)) {
+                    worklist.set(order.priorityOf(successor));
+                }
+            }
+        }
     }
 
     /**
@@ -34,33 +280,34 @@ public class DivisionByZeroAnalysis extends ForwardFlowAnalysis<Unit, ZeroAbstra
      */
     @Override
     protected void flowThrough(ZeroAbstractState in, Unit unit, ZeroAbstractState out) {
+        flowThroughCount++;
+
         // Load all values from IN state into OUT state.
-        out.clear();
-        out.putAll(in);
+        out.copyFrom(in);
 
         // Check if the unit is a definition statement.
         if (unit instanceof DefinitionStmt) {
             DefinitionStmt definition = (DefinitionStmt) unit;
 
-            // Assume just local variables
-            Local variable = (Local) definition.getLeftOp();
-
-            // Create a visitor for the right operand of the assignment.
-            ZeroValueVisitor visitor = new ZeroValueVisitor(in);
-            ZeroAbstractValue resolvedValue = visitor.visit(definition.getRightOp()).done();
+            // Evaluate the right operand of the assignment against the IN state.
+            ZeroAbstractValue resolvedValue = visitor.reset(in).visit(definition.getRightOp()).done();
 
             if (visitor.getPossibleDivisionByZero()) {
                 possibleDivisionByZero.put(unit, true);
             }
 
             // Set the ZeroAbstractValue in OUT state for the variable being assigned.
-            out.setValue(variable.getName(), resolvedValue);
+            // Stores into fields or array elements do not change the state, since only locals are tracked.
+            if (definition.getLeftOp() instanceof Local) {
+                out.setValue(((Local) definition.getLeftOp()).getName(), resolvedValue);
+            }
         }
     }
 
     @Override
     protected ZeroAbstractState newInitialFlow() {
-        return new ZeroAbstractState();
+        allocatedStates++;
+        return new ZeroAbstractState(locals);
     }
 
     /**
@@ -71,15 +318,71 @@ public class DivisionByZeroAnalysis extends ForwardFlowAnalysis<Unit, ZeroAbstra
      */
     @Override
     protected void merge(ZeroAbstractState input1, ZeroAbstractState input2, ZeroAbstractState output) {
-        output.clear();
-        // Uso la union ya que es un analisis MAY.
-        output.putAll(input1.union(input2));
+        mergeCount++;
+        // Uso la union ya que es un analisis MAY. La calculamos directamente sobre output, que puede ser alguna de las
+        // entradas.
+        if (output == input2) {
+            output.joinWith(input1);
+        } else {
+            if (output != input1) {
+                output.copyFrom(input1);
+            }
+            output.joinWith(input2);
+        }
+    }
+
+    /**
+     * This method merges a flow into an existing one in place. Soot's default implementation allocates a temporary
+     * flow for every merge.
+     * @param succNode the node the flows are merged for
+     * @param inout the flow to merge into
+     * @param in the flow to merge
+     */
+    @Override
+    protected void mergeInto(Unit succNode, ZeroAbstractState inout, ZeroAbstractState in) {
+        mergeCount++;
+        inout.joinWith(in);
     }
 
     @Override
     protected void copy(ZeroAbstractState source, ZeroAbstractState dest) {
-        dest.clear();
-        dest.putAll(source);
+        dest.copyFrom(source);
+    }
+
+    /**
+     * This method returns the amount of {@link ZeroAbstractState}s allocated by this analysis. Besides the IN and OUT
+     * state of each unit, Soot allocates a temporary state for each evaluation of a unit inside a loop.
+     * @return the amount of allocated states.
+     */
+    public long getAllocatedStates() {
+        return allocatedStates;
+    }
+
+    /**
+     * This method returns the amount of times the flow function was evaluated, i.e. the iterations needed to reach the
+     * fixpoint.
+     * @return the amount of flow function evaluations.
+     */
+    public long getFlowThroughCount() {
+        return flowThroughCount;
+    }
+
+    /**
+     * This method returns the amount of merges of two flows. The sparse solver counts the merges of the values of the
+     * definitions of a local that reach a use.
+     * @return the amount of merges.
+     */
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * This method returns the largest amount of defined variables in the OUT state of a unit. The sparse solver does
+     * not keep states, so it returns the largest amount of locals used by a definition.
+     * @return the largest state size.
+     */
+    public int getMaxStateSize() {
+        return maxStateSize;
     }
 
     /**
@@ -88,38 +391,105 @@ public class DivisionByZeroAnalysis extends ForwardFlowAnalysis<Unit, ZeroAbstra
      * @return true if the given unit is possibly offending (i.e., that may contain a division by zero).
      */
     public boolean unitIsOffending(Unit unit) {
-        return possibleDivisionByZero.getOrDefault(unit, false);
+        return result.isOffending(unit);
     }
 
     /**
      * This method returns a dictionary with all expressions that have a possible division by zero.
-     * The key for each entry is the line number of the expression.
+     * The key for each entry is the line number of the expression. If a line has several of them, only the first one
+     * is returned; see {@link #getResult()} for all of them.
      * @return a dictionary with all expressions that have a possible division by zero.
      */
     public Map<Integer, String> getPossibleDivisionByZeroExpressions() {
-        Map<Integer, String> expressions = new HashMap<>();
-
-        for (Unit unit : this.possibleDivisionByZero.keySet()) {
-            if (this.possibleDivisionByZero.get(unit)) {
-                expressions.put(unit.getJavaSourceStartLineNumber(), unit.toString());
-            }
-        }
+        return result.getFirstOffendingExpressionByLine();
+    }
 
-        return expressions;
+    /**
+     * This method returns the line and expression of every unit that may divide by zero, including the ones that share
+     * a line.
+     * @return the findings, in body order.
+     */
+    public List<DivisionByZeroFinding> getFindings() {
+        return result.getFindings();
     }
 
     /**
-     * This method returns the IN state for the given line number.
+     * This method returns the IN state for the given line number, i.e., the IN state of the first unit of the line.
      * @param lineNumber the line number to check.
      * @return the IN state for the given line number.
      */
     public ZeroAbstractState getINStateForLineNumber(int lineNumber) {
-        for (Unit unit : this.unitToBeforeFlow.keySet()) {
-            if (unit.getJavaSourceStartLineNumber() == lineNumber) {
-                return this.unitToBeforeFlow.get(unit);
+        return result.getINStateForLineNumber(lineNumber);
+    }
+
+    /**
+     * This method returns the index of the results of this analysis.
+     * @return the results, indexed by line and by unit.
+     */
+    public DivisionByZeroResult getResult() {
+        return result;
+    }
+
+    /**
+     * This method returns the value the method may return: the merge of the values of every return statement.
+     * @return the returned value, BOTTOM if the method never returns a value.
+     */
+    public ZeroAbstractValue getReturnValue() {
+        ZeroAbstractValue returned = ZeroAbstractValue.BOTTOM;
+        for (Unit unit : graph) {
+            if (unit instanceof ReturnStmt) {
+                ZeroAbstractValue value = visitor.reset(result.getINState(unit)).visit(((ReturnStmt) unit).getOp()).done();
+                returned = returned.merge(value == null ? ZeroAbstractValue.MAYBE_ZERO : value);
             }
         }
+        return returned;
+    }
 
-        return null;
+    /**
+     * Rebuilds the IN state of a unit from the reaching definitions of each local.
+     */
+    private ZeroAbstractState sparseINState(Unit unit) {
+        // SimpleLocalDefs devuelve la única definición de un local aunque todavía no haya llegado a la unidad,
+        // así que solo tomamos las definiciones desde las que se alcanza la unidad.
+        Set<Unit> reaching = backwardReachableUnits(unit);
+        ZeroAbstractState state = new ZeroAbstractState(locals);
+        for (Local local : body.getLocals()) {
+            ZeroAbstractValue merged = null;
+            for (Unit definition : localDefs.getDefsOfAt(local, unit)) {
+                ZeroAbstractValue value = definitionValues.get(definition);
+                if (value != null && reaching.contains(definition)) {
+                    merged = merged == null ? value : merged.merge(value);
+                }
+            }
+            state.setValue(local.getName(), merged);
+        }
+        return state;
+    }
+
+    /**
+     * Rebuilds the OUT state of a unit: its IN state with the value it assigns, if any.
+     */
+    private ZeroAbstractState sparseOUTState(Unit unit) {
+        ZeroAbstractState state = new ZeroAbstractState(locals);
+        state.copyFrom(result.getINState(unit));
+        if (unit instanceof DefinitionStmt && ((DefinitionStmt) unit).getLeftOp() instanceof Local) {
+            state.setValue(((Local) ((DefinitionStmt) unit).getLeftOp()).getName(), definitionValues.get(unit));
+        }
+        return state;
+    }
+
+    /**
+     * Returns the units from which there is a non-empty path to the given unit.
+     */
+    private Set<Unit> backwardReachableUnits(Unit unit) {
+        Set<Unit> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Unit> pending = new ArrayDeque<>(graph.getPredsOf(unit));
+        while (!pending.isEmpty()) {
+            Unit current = pending.poll();
+            if (visited.add(current)) {
+                pending.addAll(graph.getPredsOf(current));
+            }
+        }
+        return visited;
     }
 }
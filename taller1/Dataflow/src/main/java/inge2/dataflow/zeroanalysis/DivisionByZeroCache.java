@@ -0,0 +1,423 @@
+package inge2.dataflow.zeroanalysis;
+
+import inge2.dataflow.util.StreamUtils;
+import inge2.dataflow.util.soot.CfgFlavour;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import soot.Body;
+import soot.IFoundFile;
+import soot.SootMethod;
+import soot.SourceLocator;
+import soot.Unit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps the results of the division by zero analysis on disk, so that methods that did not change since
+ * a previous run are not analyzed again.
+ *
+ * Each result is stored in its own file, named by a hash of the bytecode of the method (name, descriptor,
+ * instructions, constants, line numbers and local variable names), the {@link #ANALYSIS_VERSION}, the solver, the
+ * {@link CfgFlavour}, since a cheaper graph may report divisions that the exceptional one rules out, and the options of
+ * the Soot phases that build the Jimple, see {@link #jimpleOptionsOf(String[])}. The method is hashed alone, so the key
+ * does not depend on the class it belongs to or on the other methods of the class.
+ *
+ * The keys of the methods of a class are computed from its class file, without Soot building its bodies. This is what
+ * allows skipping Jimple generation for classes whose methods are all cached.
+ */
+public class DivisionByZeroCache {
+
+    /**
+     * The system property with the directory of the cache. The cache is disabled when it is not set.
+     */
+    public static final String SYSTEM_PROPERTY = "zeroAnalysis.cacheDir";
+
+    /**
+     * The version of the analysis results. It must change whenever the analysis may produce different results, so
+     * that old results are not served.
+     */
+    public static final int ANALYSIS_VERSION = 3;
+
+    private final Path directory;
+
+    private final ZeroAnalysisSolver solver;
+
+    private final CfgFlavour flavour;
+
+    private final String jimpleOptions;
+
+    /**
+     * The key of each method with code, by method signature.
+     */
+    private final Map<String, String> methodKeys = new ConcurrentHashMap<>();
+
+    /**
+     * The classes whose methods are in {@link #methodKeys}.
+     */
+    private final Map<String, List<String>> scannedClasses = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public DivisionByZeroCache(Path directory, ZeroAnalysisSolver solver, CfgFlavour flavour, String jimpleOptions) {
+        this.directory = directory;
+        this.solver = solver;
+        this.flavour = flavour;
+        this.jimpleOptions = jimpleOptions;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the cache directory " + directory, e);
+        }
+    }
+
+    /**
+     * Opens the cache in the directory named by the {@link #SYSTEM_PROPERTY} system property.
+     * @param solver the solver the results are computed with.
+     * @param flavour the control flow graphs the results are computed on.
+     * @param jimpleOptions the options the Jimple of the bodies is built with, see {@link #jimpleOptionsOf(String[])}.
+     * @return the cache, or null if the property is not set.
+     */
+    public static DivisionByZeroCache fromSystemProperty(ZeroAnalysisSolver solver, CfgFlavour flavour,
+                                                         String jimpleOptions) {
+        String path = System.getProperty(SYSTEM_PROPERTY);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        return new DivisionByZeroCache(Paths.get(path), solver, flavour, jimpleOptions);
+    }
+
+    /**
+     * Returns the Soot arguments that shape the Jimple of the bodies: the options of the "jb" phase and its subphases,
+     * e.g. <code>jb.a=off</code>, and whether line numbers are kept. The findings of a method are only reused by runs
+     * with the same arguments, since other Jimple has other expressions and lines.
+     * @param sootArgs the arguments Soot is run with.
+     * @return the arguments in a canonical form.
+     */
+    public static String jimpleOptionsOf(String[] sootArgs) {
+        // Las opciones de una fase se guardan en el orden en que se dan, porque las últimas pisan a las primeras.
+        Map<String, List<String>> phaseOptions = new TreeMap<>();
+        boolean keepLineNumbers = false;
+        for (int i = 0; i < sootArgs.length; i++) {
+            String arg = sootArgs[i];
+            if (("-p".equals(arg) || "-phase-option".equals(arg)) && i + 2 < sootArgs.length) {
+                String phase = sootArgs[i + 1];
+                if ("jb".equals(phase) || phase.startsWith("jb.")) {
+                    phaseOptions.computeIfAbsent(phase, p -> new ArrayList<>()).add(sootArgs[i + 2]);
+                }
+                i += 2;
+            } else if ("-keep-line-number".equals(arg)) {
+                keepLineNumbers = true;
+            }
+        }
+        return phaseOptions + (keepLineNumbers ? " -keep-line-number" : "");
+    }
+
+    /**
+     * Computes the keys of the methods of a class from its class file.
+     * @param classFile the bytes of the class file.
+     * @return the name of the class.
+     */
+    public String scanClass(byte[] classFile) {
+        ClassNode classNode = new ClassNode();
+        new ClassReader(classFile).accept(classNode, ClassReader.SKIP_FRAMES);
+
+        String className = Type.getObjectType(classNode.name).getClassName();
+        List<String> signatures = new ArrayList<>();
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions.size() == 0) {
+                // Abstract and native methods have no body to analyze.
+                continue;
+            }
+            String signature = signatureOf(className, method);
+            this.methodKeys.put(signature, this.keyOf(method));
+            signatures.add(signature);
+        }
+        this.scannedClasses.put(className, signatures);
+        return className;
+    }
+
+    /**
+     * This method checks if all the methods of a scanned class have cached results.
+     * @param className the class name.
+     * @return true if the class was scanned and all of its methods are cached.
+     */
+    public boolean isFullyCached(String className) {
+        List<String> signatures = this.scannedClasses.get(className);
+        if (signatures == null) {
+            return false;
+        }
+        for (String signature : signatures) {
+            if (!Files.exists(this.fileOf(this.methodKeys.get(signature)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This method returns the signatures of the methods with code of a scanned class.
+     * @param className the class name.
+     * @return the method signatures, or an empty list if the class was not scanned.
+     */
+    public List<String> getScannedMethods(String className) {
+        return this.scannedClasses.getOrDefault(className, Collections.emptyList());
+    }
+
+    /**
+     * This method returns the cached results of a method.
+     * @param methodSignature the method signature.
+     * @return the cached results, or null if there are none.
+     */
+    public Entry get(String methodSignature) {
+        String key = this.methodKeys.get(methodSignature);
+        Path file = key == null ? null : this.fileOf(key);
+        if (file == null || !Files.exists(file)) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+
+        try {
+            Entry entry = Entry.parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+            this.hits.incrementAndGet();
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            // Un archivo ilegible se trata como ausente y se vuelve a calcular.
+            this.misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * This method returns the cached results of a method, computing its key from the class file first if needed.
+     * @param method the method.
+     * @return the cached results, or null if there are none.
+     */
+    public Entry get(SootMethod method) {
+        this.ensureScanned(method.getDeclaringClass().getName());
+        return this.get(method.getSignature());
+    }
+
+    /**
+     * Stores the results of the analysis of a method.
+     * @param method the analyzed method.
+     * @param analysis the analysis of its body.
+     */
+    public void put(SootMethod method, DivisionByZeroAnalysis analysis) {
+        this.ensureScanned(method.getDeclaringClass().getName());
+        String key = this.methodKeys.get(method.getSignature());
+        if (key == null) {
+            return;
+        }
+
+        Path file = this.fileOf(key);
+        try {
+            // Se escribe en un archivo temporal y se mueve, porque otros threads pueden estar leyendo el mismo archivo.
+            Path temporary = Files.createTempFile(this.directory, key, ".tmp");
+            Files.write(temporary, Entry.of(method.getActiveBody(), analysis).format(), StandardCharsets.UTF_8);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    private void ensureScanned(String className) {
+        if (this.scannedClasses.containsKey(className)) {
+            return;
+        }
+
+        IFoundFile found = SourceLocator.v().lookupInClassPath(className.replace('.', '/') + ".class");
+        if (found == null) {
+            this.scannedClasses.put(className, Collections.emptyList());
+            return;
+        }
+        try (InputStream in = found.inputStream()) {
+            this.scanClass(StreamUtils.readAllBytes(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the class file of " + className, e);
+        } finally {
+            found.silentClose();
+        }
+    }
+
+    private Path fileOf(String key) {
+        return this.directory.resolve(key);
+    }
+
+    /**
+     * Returns the hash of the bytecode of a method, together with the analysis version, the solver, the flavour and
+     * the Jimple options.
+     */
+    private String keyOf(MethodNode method) {
+        // Un class file con solo este método: su pool de constantes depende únicamente del método.
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, "CachedMethod", null, "java/lang/Object", null);
+        method.accept(writer);
+        writer.visitEnd();
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((ANALYSIS_VERSION + ":" + this.solver + ":" + this.flavour + ":" + this.jimpleOptions + ":")
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(writer.toByteArray());
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the signature of a method in Soot's format, e.g. <code>&lt;A: int f(int,java.lang.String)&gt;</code>.
+     */
+    static String signatureOf(String className, MethodNode method) {
+        StringBuilder parameters = new StringBuilder();
+        for (Type parameter : Type.getArgumentTypes(method.desc)) {
+            if (parameters.length() > 0) {
+                parameters.append(',');
+            }
+            parameters.append(parameter.getClassName());
+        }
+        return "<" + className + ": " + Type.getReturnType(method.desc).getClassName() + " " + method.name
+                + "(" + parameters + ")>";
+    }
+
+    /**
+     * The cached results of a method: its possible divisions by zero and the IN state of each of its lines.
+     */
+    public static class Entry {
+
+        private final List<DivisionByZeroFinding> findings;
+
+        private final Map<Integer, Map<String, ZeroAbstractValue>> inStates;
+
+        private Entry(List<DivisionByZeroFinding> findings, Map<Integer, Map<String, ZeroAbstractValue>> inStates) {
+            this.findings = findings;
+            this.inStates = inStates;
+        }
+
+        /**
+         * This method returns the possible divisions by zero of the method. A line may have several of them.
+         * @return the findings, in body order.
+         */
+        public List<DivisionByZeroFinding> getFindings() {
+            return Collections.unmodifiableList(this.findings);
+        }
+
+        /**
+         * This method returns the IN state for the given line number.
+         * @param lineNumber the line number to check.
+         * @return the IN state for the given line number, or null if the line has no code.
+         */
+        public ZeroAbstractState getINStateForLineNumber(int lineNumber) {
+            Map<String, ZeroAbstractValue> values = this.inStates.get(lineNumber);
+            if (values == null) {
+                return null;
+            }
+
+            ZeroAbstractState state = new ZeroAbstractState();
+            for (Map.Entry<String, ZeroAbstractValue> value : values.entrySet()) {
+                state.setValue(value.getKey(), value.getValue());
+            }
+            return state;
+        }
+
+        static Entry of(Body body, DivisionByZeroAnalysis analysis) {
+            Map<Integer, Map<String, ZeroAbstractValue>> inStates = new TreeMap<>();
+            for (Unit unit : body.getUnits()) {
+                int line = unit.getJavaSourceStartLineNumber();
+                if (line < 0 || inStates.containsKey(line)) {
+                    continue;
+                }
+                ZeroAbstractState state = analysis.getINStateForLineNumber(line);
+                if (state != null) {
+                    Map<String, ZeroAbstractValue> values = new LinkedHashMap<>();
+                    for (String variable : state.getDefinedVariables()) {
+                        values.put(variable, state.getValue(variable));
+                    }
+                    inStates.put(line, values);
+                }
+            }
+            return new Entry(new ArrayList<>(analysis.getFindings()), inStates);
+        }
+
+        /**
+         * Returns the lines of the cache file: one "finding &lt;line&gt; &lt;expression&gt;" line per possible
+         * division by zero and one "in &lt;line&gt; &lt;variable&gt;=&lt;value&gt; ..." line per IN state.
+         */
+        List<String> format() {
+            List<String> lines = new ArrayList<>();
+            lines.add("version " + ANALYSIS_VERSION);
+            for (DivisionByZeroFinding finding : this.findings) {
+                lines.add("finding " + finding.getLine() + " " + finding.getExpression());
+            }
+            for (Map.Entry<Integer, Map<String, ZeroAbstractValue>> inState : this.inStates.entrySet()) {
+                StringBuilder line = new StringBuilder("in ").append(inState.getKey());
+                for (Map.Entry<String, ZeroAbstractValue> value : inState.getValue().entrySet()) {
+                    line.append(' ').append(value.getKey()).append('=').append(value.getValue().name());
+                }
+                lines.add(line.toString());
+            }
+            return lines;
+        }
+
+        static Entry parse(List<String> lines) {
+            if (lines.isEmpty() || !lines.get(0).equals("version " + ANALYSIS_VERSION)) {
+                throw new IllegalArgumentException("Unknown cache file version");
+            }
+
+            List<DivisionByZeroFinding> findings = new ArrayList<>();
+            Map<Integer, Map<String, ZeroAbstractValue>> inStates = new TreeMap<>();
+            for (String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split(" ", 3);
+                if ("finding".equals(parts[0])) {
+                    findings.add(new DivisionByZeroFinding(Integer.parseInt(parts[1]), parts[2]));
+                } else if ("in".equals(parts[0])) {
+                    Map<String, ZeroAbstractValue> values = new LinkedHashMap<>();
+                    if (parts.length > 2) {
+                        for (String assignment : parts[2].split(" ")) {
+                            String[] variableAndValue = assignment.split("=", 2);
+                            values.put(variableAndValue[0], ZeroAbstractValue.valueOf(variableAndValue[1]));
+                        }
+                    }
+                    inStates.put(Integer.parseInt(parts[1]), values);
+                } else {
+                    throw new IllegalArgumentException("Unknown cache file line: " + line);
+                }
+            }
+            return new Entry(findings, inStates);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package inge2.dataflow.zeroanalysis;
+
+import java.util.Objects;
+
+/**
+ * A possible division by zero: the line and the expression of an offending unit. Unlike a {@link soot.Unit}, it does
+ * not keep the body alive, so it can be recorded, written and cached. A line may have several findings.
+ */
+public final class DivisionByZeroFinding {
+
+    private final int line;
+    private final String expression;
+
+    public DivisionByZeroFinding(int line, String expression) {
+        this.line = line;
+        this.expression = expression;
+    }
+
+    /**
+     * @return the source line of the offending unit, or -1 if the body has no line numbers.
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the offending unit as Jimple, e.g. <code>j = m / x</code>.
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DivisionByZeroFinding)) return false;
+        DivisionByZeroFinding that = (DivisionByZeroFinding) o;
+        return line == that.line && expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(line, expression);
+    }
+
+    @Override
+    public String toString() {
+        return line + ": " + expression;
+    }
+}
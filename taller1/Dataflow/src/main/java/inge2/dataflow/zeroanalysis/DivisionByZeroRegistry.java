@@ -0,0 +1,77 @@
+package inge2.dataflow.zeroanalysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class collects the results of the division by zero analyses of many methods, keyed by method signature.
+ * Soot analyzes the bodies of different classes in parallel, so results can be recorded from several threads at once.
+ *
+ * Only the possible divisions by zero of each method are kept, not the analysis itself, so that scanning a large
+ * artifact does not keep the IN and OUT states of every method alive.
+ */
+public class DivisionByZeroRegistry {
+
+    /**
+     * This map contains the possible divisions by zero of each analyzed method, in body order.
+     */
+    private final Map<String, List<DivisionByZeroFinding>> findings = new ConcurrentHashMap<>();
+
+    /**
+     * Records the results of the analysis of a method, replacing any previous results for it.
+     * @param methodSignature the signature of the analyzed method.
+     * @param analysis the analysis of its body.
+     */
+    public void record(String methodSignature, DivisionByZeroAnalysis analysis) {
+        this.record(methodSignature, analysis.getFindings());
+    }
+
+    /**
+     * Records the possible divisions by zero of a method, replacing any previous results for it.
+     * @param methodSignature the signature of the analyzed method.
+     * @param possibleDivisionByZero the possible divisions by zero, in body order.
+     */
+    public void record(String methodSignature, List<DivisionByZeroFinding> possibleDivisionByZero) {
+        this.findings.put(methodSignature, Collections.unmodifiableList(new ArrayList<>(possibleDivisionByZero)));
+    }
+
+    /**
+     * This method returns the possible divisions by zero of a method. A line may have several of them.
+     * @param methodSignature the method signature.
+     * @return the possible divisions by zero in body order, or null if the method was not analyzed.
+     */
+    public List<DivisionByZeroFinding> getFindings(String methodSignature) {
+        return this.findings.get(methodSignature);
+    }
+
+    /**
+     * This method returns the signatures of all the analyzed methods.
+     * @return the signatures of the analyzed methods.
+     */
+    public Set<String> getAnalyzedMethods() {
+        return Collections.unmodifiableSet(this.findings.keySet());
+    }
+
+    /**
+     * This method returns the amount of possible divisions by zero found in all the analyzed methods.
+     * @return the amount of possible divisions by zero.
+     */
+    public int getFindingsCount() {
+        int count = 0;
+        for (List<DivisionByZeroFinding> methodFindings : this.findings.values()) {
+            count += methodFindings.size();
+        }
+        return count;
+    }
+
+    /**
+     * Forgets all the recorded results.
+     */
+    public void clear() {
+        this.findings.clear();
+    }
+}
@@ -0,0 +1,179 @@
+package inge2.dataflow.zeroanalysis;
+
+import soot.Unit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * This class indexes the results of a {@link DivisionByZeroAnalysis} once the fixpoint is reached, so that queries by
+ * line or by unit take constant time. Units are kept in body order, so a line with several units, or several possible
+ * divisions by zero, always answers in the same order.
+ *
+ * The index does not change after it is built. The states it returns belong to the analysis and must not be modified.
+ */
+public final class DivisionByZeroResult {
+
+    /**
+     * The units of each source line, in body order.
+     */
+    private final Map<Integer, List<Unit>> unitsByLine;
+
+    /**
+     * The offending units, in body order.
+     */
+    private final List<Unit> offendingUnits;
+
+    /**
+     * The offending units of each source line, in body order.
+     */
+    private final Map<Integer, List<Unit>> offendingUnitsByLine;
+
+    private final Set<Unit> offending;
+
+    /**
+     * The expression of the first offending unit of each line.
+     */
+    private final Map<Integer, String> firstExpressionByLine;
+
+    /**
+     * The line and expression of each offending unit, in body order.
+     */
+    private final List<DivisionByZeroFinding> findings;
+
+    private final Function<Unit, ZeroAbstractState> inStates;
+    private final Function<Unit, ZeroAbstractState> outStates;
+
+    /**
+     * Builds the index.
+     * @param units the units of the body, in body order.
+     * @param offending the offending units.
+     * @param inStates the IN state of each unit. It must answer in constant time.
+     * @param outStates the OUT state of each unit. It must answer in constant time.
+     */
+    DivisionByZeroResult(Iterable<Unit> units, Set<Unit> offending,
+                         Function<Unit, ZeroAbstractState> inStates, Function<Unit, ZeroAbstractState> outStates) {
+        Map<Integer, List<Unit>> unitsByLine = new LinkedHashMap<>();
+        Map<Integer, List<Unit>> offendingUnitsByLine = new LinkedHashMap<>();
+        Map<Integer, String> firstExpressionByLine = new LinkedHashMap<>();
+        List<Unit> offendingUnits = new ArrayList<>();
+        List<DivisionByZeroFinding> findings = new ArrayList<>();
+        for (Unit unit : units) {
+            int line = unit.getJavaSourceStartLineNumber();
+            unitsByLine.computeIfAbsent(line, l -> new ArrayList<>()).add(unit);
+            if (offending.contains(unit)) {
+                offendingUnits.add(unit);
+                offendingUnitsByLine.computeIfAbsent(line, l -> new ArrayList<>()).add(unit);
+                firstExpressionByLine.putIfAbsent(line, unit.toString());
+                findings.add(new DivisionByZeroFinding(line, unit.toString()));
+            }
+        }
+
+        unitsByLine.replaceAll((line, lineUnits) -> Collections.unmodifiableList(lineUnits));
+        offendingUnitsByLine.replaceAll((line, lineUnits) -> Collections.unmodifiableList(lineUnits));
+        Set<Unit> offendingSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        offendingSet.addAll(offendingUnits);
+
+        this.unitsByLine = Collections.unmodifiableMap(unitsByLine);
+        this.offendingUnits = Collections.unmodifiableList(offendingUnits);
+        this.offendingUnitsByLine = Collections.unmodifiableMap(offendingUnitsByLine);
+        this.offending = Collections.unmodifiableSet(offendingSet);
+        this.firstExpressionByLine = Collections.unmodifiableMap(firstExpressionByLine);
+        this.findings = Collections.unmodifiableList(findings);
+        this.inStates = inStates;
+        this.outStates = outStates;
+    }
+
+    /**
+     * This method returns the units of a source line.
+     * @param lineNumber the line number.
+     * @return the units of the line in body order, or an empty list if the line has no code.
+     */
+    public List<Unit> getUnitsForLine(int lineNumber) {
+        return this.unitsByLine.getOrDefault(lineNumber, Collections.emptyList());
+    }
+
+    /**
+     * This method returns the IN state of a unit.
+     * @param unit the unit.
+     * @return the IN state, or null if the unit is not part of the analyzed body.
+     */
+    public ZeroAbstractState getINState(Unit unit) {
+        return this.inStates.apply(unit);
+    }
+
+    /**
+     * This method returns the OUT state of a unit.
+     * @param unit the unit.
+     * @return the OUT state, or null if the unit is not part of the analyzed body.
+     */
+    public ZeroAbstractState getOUTState(Unit unit) {
+        return this.outStates.apply(unit);
+    }
+
+    /**
+     * This method returns the IN state of the first unit of a source line.
+     * @param lineNumber the line number.
+     * @return the IN state, or null if the line has no code.
+     */
+    public ZeroAbstractState getINStateForLineNumber(int lineNumber) {
+        List<Unit> units = this.unitsByLine.get(lineNumber);
+        return units == null ? null : this.getINState(units.get(0));
+    }
+
+    /**
+     * This method checks if a unit may divide by zero.
+     * @param unit the unit.
+     * @return true if the unit may divide by zero.
+     */
+    public boolean isOffending(Unit unit) {
+        return this.offending.contains(unit);
+    }
+
+    /**
+     * This method returns all the units that may divide by zero.
+     * @return the offending units, in body order.
+     */
+    public List<Unit> getOffendingUnits() {
+        return this.offendingUnits;
+    }
+
+    /**
+     * This method returns the units of a source line that may divide by zero.
+     * @param lineNumber the line number.
+     * @return the offending units of the line in body order, or an empty list if there are none.
+     */
+    public List<Unit> getOffendingUnitsForLine(int lineNumber) {
+        return this.offendingUnitsByLine.getOrDefault(lineNumber, Collections.emptyList());
+    }
+
+    /**
+     * This method returns the offending units grouped by source line.
+     * @return the offending units of each line that has any, in body order.
+     */
+    public Map<Integer, List<Unit>> getOffendingUnitsByLine() {
+        return this.offendingUnitsByLine;
+    }
+
+    /**
+     * This method returns the expression of the first offending unit of each line.
+     * @return a dictionary from line number to expression.
+     */
+    public Map<Integer, String> getFirstOffendingExpressionByLine() {
+        return this.firstExpressionByLine;
+    }
+
+    /**
+     * This method returns the line and expression of every unit that may divide by zero.
+     * @return the findings, in body order.
+     */
+    public List<DivisionByZeroFinding> getFindings() {
+        return this.findings;
+    }
+}
@@ -0,0 +1,21 @@
+package inge2.dataflow.zeroanalysis;
+
+import soot.tagkit.StringTag;
+
+/**
+ * The tag added to the units that may divide by zero. It has its own name, so that analyzing a body again can remove
+ * the tags of the previous analysis without touching other {@link StringTag}s.
+ */
+public class DivisionByZeroTag extends StringTag {
+
+    public static final String NAME = "DivisionByZeroTag";
+
+    public DivisionByZeroTag() {
+        super("Possible division by zero here");
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
@@ -0,0 +1,327 @@
+package inge2.dataflow.zeroanalysis;
+
+import inge2.dataflow.util.visitor.UnsupportedValuePolicy;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.DivExpr;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class answers, on demand, if the divisor of a single division may be zero.
+ *
+ * Instead of computing the state of every unit of the body, a query walks backwards from the division to the
+ * definitions of the divisor that reach it, and from each of them to the definitions of the locals it uses. Only those
+ * definitions are evaluated, propagating values along their def-use chains like {@link ZeroAnalysisSolver#SPARSE},
+ * and the query stops as soon as the divisor may be zero. The time of a query depends on the backward slice of the
+ * divisor, not on the size of the method.
+ *
+ * The reaching definitions found by a query are kept, so several queries on the same body share them.
+ */
+public class DivisorQuery {
+
+    private final UnitGraph graph;
+
+    /**
+     * The visitor used to evaluate the right operand of every definition, reset for each one.
+     */
+    private final ZeroValueVisitor visitor = new ZeroValueVisitor(null);
+
+    /**
+     * The definitions of each local that reach each unit, found so far.
+     */
+    private final Map<Local, Map<Unit, List<Unit>>> reachingDefinitions = new HashMap<>();
+
+    /**
+     * The amount of units visited looking for reaching definitions (see {@link #getVisitedUnits()}).
+     */
+    private long visitedUnits = 0;
+
+    /**
+     * The amount of times a definition was evaluated (see {@link #getEvaluatedDefinitions()}).
+     */
+    private long evaluatedDefinitions = 0;
+
+    public DivisorQuery(UnitGraph graph) {
+        this(graph, UnsupportedValuePolicy.TOP);
+    }
+
+    /**
+     * Creates a query object for the given control flow graph.
+     * @param graph the control flow graph of the method.
+     * @param unsupportedValuePolicy what to do with expressions the analysis does not cover.
+     */
+    public DivisorQuery(UnitGraph graph, UnsupportedValuePolicy unsupportedValuePolicy) {
+        this.graph = graph;
+        this.visitor.setUnsupportedValuePolicy(unsupportedValuePolicy);
+    }
+
+    /**
+     * This method checks if a unit is a division, i.e. a definition whose right operand is a division.
+     * @param unit the unit to check.
+     * @return true if the unit is a division.
+     */
+    public static boolean isDivision(Unit unit) {
+        return unit instanceof DefinitionStmt && ((DefinitionStmt) unit).getRightOp() instanceof DivExpr;
+    }
+
+    /**
+     * This method checks if the divisor of a division may be zero.
+     * @param division the division unit.
+     * @return true if the divisor may be ZERO or MAYBE_ZERO.
+     */
+    public boolean mayBeZero(Unit division) {
+        return mayBeZero(divisorValue(division));
+    }
+
+    /**
+     * This method returns the value of the divisor of a division. If the divisor may be zero, the value is only a
+     * lower bound of the one {@link DivisionByZeroAnalysis} computes: it is ZERO or MAYBE_ZERO, but the exploration
+     * stopped before telling which.
+     * @param division the division unit.
+     * @return the value of the divisor.
+     * @throws IllegalArgumentException if the unit is not a division.
+     */
+    public ZeroAbstractValue divisorValue(Unit division) {
+        if (!isDivision(division)) {
+            throw new IllegalArgumentException("Not a division: " + division);
+        }
+
+        Value divisor = ((DivExpr) ((DefinitionStmt) division).getRightOp()).getOp2();
+        if (!(divisor instanceof Local)) {
+            return evaluate(divisor, new ZeroAbstractState());
+        }
+
+        List<Unit> divisorDefinitions = definitionsOf((Local) divisor, division);
+        if (divisorDefinitions.isEmpty()) {
+            // Como en el análisis completo, un local sin definiciones vale ZERO.
+            return ZeroAbstractValue.ZERO;
+        }
+        return new Slice(divisorDefinitions).solve();
+    }
+
+    /**
+     * The definitions explored by a query and their values. They start as BOTTOM and only grow, so once the divisor
+     * may be zero it stays that way and the query can stop.
+     */
+    private final class Slice {
+        private final List<Unit> divisorDefinitions;
+        private final Set<Unit> divisorDefinitionSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<Unit, ZeroAbstractValue> values = new IdentityHashMap<>();
+
+        /**
+         * The definitions that use the value of each definition.
+         */
+        private final Map<Unit, Set<Unit>> dependents = new IdentityHashMap<>();
+
+        /**
+         * The definitions already evaluated once.
+         */
+        private final Set<Unit> evaluated = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private final Deque<Unit> worklist = new ArrayDeque<>();
+        private final Set<Unit> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final ZeroAbstractState uses = new ZeroAbstractState();
+
+        private Slice(List<Unit> divisorDefinitions) {
+            this.divisorDefinitions = divisorDefinitions;
+            this.divisorDefinitionSet.addAll(divisorDefinitions);
+        }
+
+        private ZeroAbstractValue solve() {
+            // Recorrido en profundidad del slice: cada definición se evalúa apenas se recorrieron las definiciones
+            // que usa, así que las constantes cercanas al divisor responden sin recorrer el resto.
+            Deque<Map.Entry<Unit, Iterator<Unit>>> frames = new ArrayDeque<>();
+            for (Unit root : divisorDefinitions) {
+                if (values.containsKey(root)) {
+                    continue;
+                }
+                values.put(root, ZeroAbstractValue.BOTTOM);
+                frames.push(new AbstractMap.SimpleEntry<>(root, usedDefinitions(root).iterator()));
+                while (!frames.isEmpty()) {
+                    Unit definition = frames.peek().getKey();
+                    Iterator<Unit> usedDefinitions = frames.peek().getValue();
+                    if (usedDefinitions.hasNext()) {
+                        Unit usedDefinition = usedDefinitions.next();
+                        dependents.computeIfAbsent(usedDefinition, d -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                                .add(definition);
+                        if (!values.containsKey(usedDefinition)) {
+                            values.put(usedDefinition, ZeroAbstractValue.BOTTOM);
+                            frames.push(new AbstractMap.SimpleEntry<>(usedDefinition,
+                                    usedDefinitions(usedDefinition).iterator()));
+                        }
+                        continue;
+                    }
+
+                    frames.pop();
+                    evaluated.add(definition);
+                    if (update(definition) && divisorMayBeZero()) {
+                        return divisorValue();
+                    }
+                }
+            }
+
+            // Las definiciones evaluadas antes que las que usan, dentro de un ciclo, se vuelven a evaluar.
+            while (!worklist.isEmpty()) {
+                Unit definition = worklist.poll();
+                queued.remove(definition);
+                if (update(definition) && divisorMayBeZero()) {
+                    return divisorValue();
+                }
+            }
+            return divisorValue();
+        }
+
+        /**
+         * Evaluates a definition and queues the evaluated definitions that use it if its value changed.
+         * @return true if the value of a definition of the divisor changed.
+         */
+        private boolean update(Unit definition) {
+            evaluatedDefinitions++;
+            uses.clear();
+            for (ValueBox useBox : definition.getUseBoxes()) {
+                if (useBox.getValue() instanceof Local) {
+                    Local used = (Local) useBox.getValue();
+                    ZeroAbstractValue merged = null;
+                    for (Unit usedDefinition : definitionsOf(used, definition)) {
+                        ZeroAbstractValue value = values.get(usedDefinition);
+                        merged = merged == null ? value : merged.merge(value);
+                    }
+                    uses.setValue(used.getName(), merged);
+                }
+            }
+
+            ZeroAbstractValue value = evaluate(((DefinitionStmt) definition).getRightOp(), uses);
+            if (value == values.put(definition, value)) {
+                return false;
+            }
+            for (Unit dependent : dependents.getOrDefault(definition, Collections.emptySet())) {
+                if (evaluated.contains(dependent) && queued.add(dependent)) {
+                    worklist.add(dependent);
+                }
+            }
+            return divisorDefinitionSet.contains(definition);
+        }
+
+        private List<Unit> usedDefinitions(Unit definition) {
+            List<Unit> usedDefinitions = new ArrayList<>();
+            for (ValueBox useBox : definition.getUseBoxes()) {
+                if (useBox.getValue() instanceof Local) {
+                    usedDefinitions.addAll(definitionsOf((Local) useBox.getValue(), definition));
+                }
+            }
+            return usedDefinitions;
+        }
+
+        private boolean divisorMayBeZero() {
+            return mayBeZero(divisorValue());
+        }
+
+        private ZeroAbstractValue divisorValue() {
+            ZeroAbstractValue merged = ZeroAbstractValue.BOTTOM;
+            for (Unit definition : divisorDefinitions) {
+                merged = merged.merge(values.getOrDefault(definition, ZeroAbstractValue.BOTTOM));
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * This method returns the amount of units visited looking for reaching definitions by every query so far.
+     * @return the amount of visited units.
+     */
+    public long getVisitedUnits() {
+        return visitedUnits;
+    }
+
+    /**
+     * This method returns the amount of times a definition was evaluated by every query so far.
+     * @return the amount of evaluated definitions.
+     */
+    public long getEvaluatedDefinitions() {
+        return evaluatedDefinitions;
+    }
+
+    private static boolean mayBeZero(ZeroAbstractValue value) {
+        return value == ZeroAbstractValue.ZERO || value == ZeroAbstractValue.MAYBE_ZERO;
+    }
+
+    private ZeroAbstractValue evaluate(Value value, ZeroAbstractState state) {
+        ZeroAbstractValue resolvedValue = visitor.reset(state).visit(value).done();
+        return resolvedValue == null ? ZeroAbstractValue.MAYBE_ZERO : resolvedValue;
+    }
+
+    /**
+     * Returns the definitions of a local that reach a unit. The graph is walked backwards from the unit, stopping at
+     * the definitions of the local and at the units whose reaching definitions are already known. The reaching
+     * definitions of every walked unit are then computed and kept, so a later walk for the same local stops as soon
+     * as it reaches one of them.
+     */
+    private List<Unit> definitionsOf(Local local, Unit unit) {
+        Map<Unit, List<Unit>> known = reachingDefinitions.computeIfAbsent(local, l -> new IdentityHashMap<>());
+        List<Unit> definitions = known.get(unit);
+        if (definitions != null) {
+            return definitions;
+        }
+
+        List<Unit> region = new ArrayList<>();
+        Map<Unit, Set<Unit>> reaching = new IdentityHashMap<>();
+        Deque<Unit> pending = new ArrayDeque<>();
+        region.add(unit);
+        reaching.put(unit, new LinkedHashSet<>());
+        pending.push(unit);
+        while (!pending.isEmpty()) {
+            Unit current = pending.pop();
+            visitedUnits++;
+            for (Unit predecessor : graph.getPredsOf(current)) {
+                if (!defines(predecessor, local) && !known.containsKey(predecessor) && !reaching.containsKey(predecessor)) {
+                    region.add(predecessor);
+                    reaching.put(predecessor, new LinkedHashSet<>());
+                    pending.push(predecessor);
+                }
+            }
+        }
+
+        // Las definiciones que llegan a una unidad son las que llegan a sus predecesores, o los predecesores mismos
+        // si definen el local. Recorrer la región desde lo más lejano converge en pocas pasadas, aun con ciclos.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = region.size() - 1; i >= 0; i--) {
+                Set<Unit> reachingCurrent = reaching.get(region.get(i));
+                for (Unit predecessor : graph.getPredsOf(region.get(i))) {
+                    if (defines(predecessor, local)) {
+                        changed |= reachingCurrent.add(predecessor);
+                    } else {
+                        changed |= reachingCurrent.addAll(reaching.containsKey(predecessor)
+                                ? reaching.get(predecessor) : known.get(predecessor));
+                    }
+                }
+            }
+        }
+
+        for (Unit current : region) {
+            known.put(current, new ArrayList<>(reaching.get(current)));
+        }
+        return known.get(unit);
+    }
+
+    private static boolean defines(Unit unit, Local local) {
+        return unit instanceof DefinitionStmt && ((DefinitionStmt) unit).getLeftOp() == local;
+    }
+}
@@ -0,0 +1,82 @@
+package inge2.dataflow.zeroanalysis;
+
+import soot.Body;
+import soot.Local;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class assigns a dense index (0, 1, 2, ...) to each variable name of a method body.
+ * All the {@link ZeroAbstractState}s of an analysis share the same numbering, so a variable is found at the same
+ * position in every state. Names that are not known yet get the next free index when they are first assigned.
+ */
+public class LocalNumbering {
+
+    /**
+     * This map contains the index of each numbered variable name.
+     */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * This list contains the numbered variable names, in index order.
+     */
+    private final List<String> names = new ArrayList<>();
+
+    public LocalNumbering() {
+    }
+
+    /**
+     * Numbers all the locals of the given body, in declaration order.
+     * @param body the method body.
+     */
+    public LocalNumbering(Body body) {
+        for (Local local : body.getLocals()) {
+            this.getOrAssignIndex(local.getName());
+        }
+    }
+
+    /**
+     * This method returns the index of the given variable.
+     * @param variable the variable name.
+     * @return the index of the variable, or -1 if it is not numbered.
+     */
+    public int indexOf(String variable) {
+        Integer index = this.indexes.get(variable);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * This method returns the index of the given variable, numbering it if needed.
+     * @param variable the variable name.
+     * @return the index of the variable.
+     */
+    public int getOrAssignIndex(String variable) {
+        Integer index = this.indexes.get(variable);
+        if (index == null) {
+            index = this.names.size();
+            this.indexes.put(variable, index);
+            this.names.add(variable);
+        }
+        return index;
+    }
+
+    /**
+     * This method returns the variable name for the given index.
+     * @param index the index.
+     * @return the variable name.
+     */
+    public String nameOf(int index) {
+        return this.names.get(index);
+    }
+
+    /**
+     * This method returns the amount of numbered variables.
+     * @return the amount of numbered variables.
+     */
+    public int size() {
+        return this.names.size();
+    }
+}
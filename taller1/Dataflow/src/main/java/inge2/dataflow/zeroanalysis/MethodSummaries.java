@@ -0,0 +1,307 @@
+package inge2.dataflow.zeroanalysis;
+
+import inge2.dataflow.util.soot.UnitGraphProvider;
+import inge2.dataflow.util.visitor.UnsupportedValuePolicy;
+import org.slf4j.Logger;
+import soot.SootMethod;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.toolkits.callgraph.CallGraph;
+import soot.jimple.toolkits.callgraph.Edge;
+import soot.toolkits.graph.UnitGraph;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * This class computes the {@link MethodSummary} of every method of a call graph that returns a primitive value, and
+ * resolves the value returned by invocations from them.
+ *
+ * The summaries are computed bottom-up over the strongly connected components of the call graph, so the summaries of
+ * the callees are ready before the callers are analyzed and each method is analyzed once for each entry of its table,
+ * no matter how many callers it has. The methods of a recursive component are analyzed again until their summaries
+ * do not change. Components that do not call each other are computed in parallel.
+ *
+ * Once built, the summaries do not change and can be read from several threads.
+ */
+public class MethodSummaries {
+    private final static Logger LOGGER = getLogger(MethodSummaries.class);
+
+    private final Map<SootMethod, MethodSummary> summaries = new HashMap<>();
+
+    /**
+     * The methods each invocation may call, according to the call graph.
+     */
+    private final Map<InvokeExpr, List<SootMethod>> targets = new IdentityHashMap<>();
+
+    private final ZeroAnalysisSolver solver;
+
+    /**
+     * The amount of analyses run to compute the summaries.
+     */
+    private long analysisCount = 0;
+
+    private MethodSummaries(ZeroAnalysisSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Computes the summaries of the given methods.
+     * @param callGraph the call graph.
+     * @param methods the methods to summarize. Only the ones that have a body and return a primitive value are.
+     * @param graphs the provider of the control flow graphs.
+     * @param solver the fixpoint solver to use.
+     * @param threads the amount of threads.
+     * @return the summaries.
+     */
+    public static MethodSummaries compute(CallGraph callGraph, Collection<SootMethod> methods, UnitGraphProvider graphs,
+                                          ZeroAnalysisSolver solver, int threads) {
+        long start = System.currentTimeMillis();
+        MethodSummaries summaries = new MethodSummaries(solver);
+        for (Edge edge : callGraph) {
+            Stmt stmt = edge.srcStmt();
+            if (edge.isExplicit() && stmt != null && stmt.containsInvokeExpr()) {
+                summaries.targets.computeIfAbsent(stmt.getInvokeExpr(), invoke -> new ArrayList<>()).add(edge.tgt());
+            }
+        }
+        for (SootMethod method : methods) {
+            if (MethodSummary.canSummarize(method)) {
+                summaries.summaries.put(method, new MethodSummary(method));
+                // Los cuerpos se construyen acá, porque Soot no los construye de forma segura desde varios threads.
+                method.retrieveActiveBody();
+            }
+        }
+
+        List<List<SootMethod>> components = summaries.stronglyConnectedComponents(callGraph);
+        summaries.computeBottomUp(components, callGraph, graphs, threads);
+        LOGGER.info("Computed {} method summaries in {} components with {} analyses in {} ms", summaries.summaries.size(),
+                components.size(), summaries.analysisCount, System.currentTimeMillis() - start);
+        return summaries;
+    }
+
+    /**
+     * This method returns the summary of a method.
+     * @param method the method.
+     * @return the summary, or null if the method was not summarized.
+     */
+    public MethodSummary get(SootMethod method) {
+        return summaries.get(method);
+    }
+
+    /**
+     * This method returns the amount of analyses run to compute the summaries.
+     * @return the amount of analyses.
+     */
+    public synchronized long getAnalysisCount() {
+        return analysisCount;
+    }
+
+    /**
+     * This method returns the value returned by an invocation: the merge of the values returned by every method it
+     * may call.
+     * @param invoke the invocation.
+     * @param arguments the value of each argument.
+     * @return the returned value, MAYBE_ZERO if some of the methods has no summary.
+     */
+    public ZeroAbstractValue returnValue(InvokeExpr invoke, ZeroAbstractValue[] arguments) {
+        List<SootMethod> invoked = targets.get(invoke);
+        if (invoked == null) {
+            return ZeroAbstractValue.MAYBE_ZERO;
+        }
+
+        ZeroAbstractValue merged = ZeroAbstractValue.BOTTOM;
+        for (SootMethod method : invoked) {
+            MethodSummary summary = summaries.get(method);
+            if (summary == null) {
+                return ZeroAbstractValue.MAYBE_ZERO;
+            }
+            merged = merged.merge(summary.returnValue(arguments));
+        }
+        return merged;
+    }
+
+    /**
+     * Schedules each component after the components it calls, and waits for all of them.
+     * @param components the components, callees first.
+     */
+    private void computeBottomUp(List<List<SootMethod>> components, CallGraph callGraph, UnitGraphProvider graphs,
+                                 int threads) {
+        Map<SootMethod, CompletableFuture<Void>> done = new HashMap<>();
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (List<SootMethod> component : components) {
+                Set<CompletableFuture<Void>> callees = new LinkedHashSet<>();
+                for (SootMethod method : component) {
+                    for (SootMethod callee : calleesOf(method, callGraph)) {
+                        CompletableFuture<Void> calleeDone = done.get(callee);
+                        if (calleeDone != null) {
+                            callees.add(calleeDone);
+                        }
+                    }
+                }
+                CompletableFuture<Void> componentDone = CompletableFuture
+                        .allOf(callees.toArray(new CompletableFuture<?>[0]))
+                        .thenRunAsync(() -> computeComponent(component, graphs), executor);
+                for (SootMethod method : component) {
+                    done.put(method, componentDone);
+                }
+                all.add(componentDone);
+            }
+            CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Computes the summaries of the methods of a component, analyzing them again while some entry changes.
+     */
+    private void computeComponent(List<SootMethod> component, UnitGraphProvider provider) {
+        Map<SootMethod, UnitGraph> graphs = new LinkedHashMap<>();
+        for (SootMethod method : component) {
+            graphs.put(method, provider.getGraph(method.retrieveActiveBody()));
+        }
+
+        long analyses = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<SootMethod, UnitGraph> method : graphs.entrySet()) {
+                MethodSummary summary = summaries.get(method.getKey());
+                for (int entry = 0; entry < summary.size(); entry++) {
+                    DivisionByZeroAnalysis analysis = new DivisionByZeroAnalysis(method.getValue(),
+                            UnsupportedValuePolicy.TOP, solver, summary.argumentsOf(entry), this);
+                    changed |= summary.update(entry, analysis.getReturnValue());
+                    analyses++;
+                }
+            }
+            // Un método que no es recursivo no depende de su propio resumen, alcanza con analizarlo una vez.
+            changed &= isRecursive(component);
+        }
+
+        synchronized (this) {
+            analysisCount += analyses;
+        }
+    }
+
+    private boolean isRecursive(List<SootMethod> component) {
+        if (component.size() > 1) {
+            return true;
+        }
+        SootMethod method = component.get(0);
+        for (InvokeExpr invoke : invokesOf(method)) {
+            if (targets.getOrDefault(invoke, Collections.emptyList()).contains(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<InvokeExpr> invokesOf(SootMethod method) {
+        List<InvokeExpr> invokes = new ArrayList<>();
+        method.retrieveActiveBody().getUnits().forEach(unit -> {
+            if (((Stmt) unit).containsInvokeExpr()) {
+                invokes.add(((Stmt) unit).getInvokeExpr());
+            }
+        });
+        return invokes;
+    }
+
+    /**
+     * Returns the summarized methods called by a method.
+     */
+    private List<SootMethod> calleesOf(SootMethod method, CallGraph callGraph) {
+        List<SootMethod> callees = new ArrayList<>();
+        for (Iterator<Edge> edges = callGraph.edgesOutOf(method); edges.hasNext(); ) {
+            Edge edge = edges.next();
+            if (edge.isExplicit() && summaries.containsKey(edge.tgt())) {
+                callees.add(edge.tgt());
+            }
+        }
+        return callees;
+    }
+
+    /**
+     * Returns the strongly connected components of the call graph restricted to the summarized methods, in reverse
+     * topological order: every component comes after the components it calls. It is Tarjan's algorithm, with an
+     * explicit stack so that long call chains do not overflow the Java stack.
+     */
+    private List<List<SootMethod>> stronglyConnectedComponents(CallGraph callGraph) {
+        Map<SootMethod, Integer> index = new HashMap<>();
+        Map<SootMethod, Integer> lowLink = new HashMap<>();
+        Deque<SootMethod> stack = new ArrayDeque<>();
+        Set<SootMethod> onStack = new HashSet<>();
+        List<List<SootMethod>> components = new ArrayList<>();
+
+        for (SootMethod root : summaries.keySet()) {
+            if (index.containsKey(root)) {
+                continue;
+            }
+
+            // Cada marco es un método y el iterador de sus llamados que falta recorrer.
+            Deque<Map.Entry<SootMethod, Iterator<SootMethod>>> frames = new ArrayDeque<>();
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+            frames.push(new AbstractMap.SimpleEntry<>(root, calleesOf(root, callGraph).iterator()));
+
+            while (!frames.isEmpty()) {
+                SootMethod method = frames.peek().getKey();
+                Iterator<SootMethod> callees = frames.peek().getValue();
+                if (callees.hasNext()) {
+                    SootMethod callee = callees.next();
+                    if (!index.containsKey(callee)) {
+                        index.put(callee, index.size());
+                        lowLink.put(callee, index.get(callee));
+                        stack.push(callee);
+                        onStack.add(callee);
+                        frames.push(new AbstractMap.SimpleEntry<>(callee, calleesOf(callee, callGraph).iterator()));
+                    } else if (onStack.contains(callee)) {
+                        lowLink.put(method, Math.min(lowLink.get(method), index.get(callee)));
+                    }
+                    continue;
+                }
+
+                frames.pop();
+                if (!frames.isEmpty()) {
+                    SootMethod caller = frames.peek().getKey();
+                    lowLink.put(caller, Math.min(lowLink.get(caller), lowLink.get(method)));
+                }
+                if (lowLink.get(method).equals(index.get(method))) {
+                    List<SootMethod> component = new ArrayList<>();
+                    SootMethod member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (member != method);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+}
@@ -0,0 +1,144 @@
+package inge2.dataflow.zeroanalysis;
+
+import soot.PrimType;
+import soot.SootMethod;
+import soot.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class summarizes the value returned by a method as a function of the values of its parameters.
+ *
+ * The summary is a table with one entry for each combination of NOT_ZERO, ZERO and MAYBE_ZERO for the first
+ * {@link #MAX_PARAMETERS} primitive parameters. Every other parameter is MAYBE_ZERO in all the entries, which is
+ * correct for any argument because the analysis is monotone. An argument that is BOTTOM is read as MAYBE_ZERO too.
+ *
+ * Entries start as BOTTOM and only grow, so the summaries of recursive methods can be computed by iterating until
+ * no entry changes.
+ */
+public final class MethodSummary {
+
+    /**
+     * The amount of parameters in the table. The table has 3 ^ MAX_PARAMETERS entries.
+     */
+    public static final int MAX_PARAMETERS = 3;
+
+    /**
+     * The values of a parameter in the table, in the order of the digits of the entry number.
+     */
+    private static final ZeroAbstractValue[] INPUTS = {
+            ZeroAbstractValue.NOT_ZERO, ZeroAbstractValue.ZERO, ZeroAbstractValue.MAYBE_ZERO};
+
+    private final SootMethod method;
+
+    /**
+     * The indexes of the parameters in the table.
+     */
+    private final int[] parameters;
+
+    private final ZeroAbstractValue[] returnValues;
+
+    MethodSummary(SootMethod method) {
+        this.method = method;
+
+        List<Integer> primitiveParameters = new ArrayList<>();
+        List<Type> types = method.getParameterTypes();
+        for (int i = 0; i < types.size() && primitiveParameters.size() < MAX_PARAMETERS; i++) {
+            if (types.get(i) instanceof PrimType) {
+                primitiveParameters.add(i);
+            }
+        }
+        this.parameters = primitiveParameters.stream().mapToInt(Integer::intValue).toArray();
+
+        int entries = 1;
+        for (int i = 0; i < this.parameters.length; i++) {
+            entries *= INPUTS.length;
+        }
+        this.returnValues = new ZeroAbstractValue[entries];
+        Arrays.fill(this.returnValues, ZeroAbstractValue.BOTTOM);
+    }
+
+    /**
+     * Returns true if the summaries of the given method can be computed: it has a body and returns a primitive value.
+     */
+    static boolean canSummarize(SootMethod method) {
+        return method.isConcrete() && method.getReturnType() instanceof PrimType
+                && method.getDeclaringClass().isApplicationClass();
+    }
+
+    public SootMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * This method returns the amount of entries of the table.
+     * @return the amount of entries.
+     */
+    public int size() {
+        return returnValues.length;
+    }
+
+    /**
+     * This method returns the value returned by the method when it is called with the given arguments.
+     * @param arguments the value of each argument. The values of the arguments that are not in the table are ignored.
+     * @return the returned value, BOTTOM if the method never returns.
+     */
+    public ZeroAbstractValue returnValue(ZeroAbstractValue[] arguments) {
+        int entry = 0;
+        for (int i = parameters.length - 1; i >= 0; i--) {
+            entry = entry * INPUTS.length + digitOf(arguments[parameters[i]]);
+        }
+        return returnValues[entry];
+    }
+
+    /**
+     * This method returns the values of the parameters of an entry of the table.
+     * @param entry the entry.
+     * @return the value of each parameter.
+     */
+    ZeroAbstractValue[] argumentsOf(int entry) {
+        ZeroAbstractValue[] arguments = new ZeroAbstractValue[method.getParameterCount()];
+        Arrays.fill(arguments, ZeroAbstractValue.MAYBE_ZERO);
+        for (int parameter : parameters) {
+            arguments[parameter] = INPUTS[entry % INPUTS.length];
+            entry /= INPUTS.length;
+        }
+        return arguments;
+    }
+
+    /**
+     * This method merges a value into an entry of the table.
+     * @param entry the entry.
+     * @param value the value returned by the method for the arguments of the entry.
+     * @return true if the entry changed.
+     */
+    boolean update(int entry, ZeroAbstractValue value) {
+        ZeroAbstractValue merged = returnValues[entry].merge(value);
+        if (merged == returnValues[entry]) {
+            return false;
+        }
+        returnValues[entry] = merged;
+        return true;
+    }
+
+    private static int digitOf(ZeroAbstractValue value) {
+        if (value == ZeroAbstractValue.NOT_ZERO) {
+            return 0;
+        } else if (value == ZeroAbstractValue.ZERO) {
+            return 1;
+        }
+        return 2;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(method.getSignature()).append(" {");
+        for (int entry = 0; entry < returnValues.length; entry++) {
+            builder.append(entry == 0 ? "" : ", ").append(Arrays.toString(argumentsOf(entry)))
+                    .append(" -> ").append(returnValues[entry]);
+        }
+        return builder.append("}").toString();
+    }
+}
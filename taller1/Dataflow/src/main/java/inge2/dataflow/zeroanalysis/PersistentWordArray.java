@@ -0,0 +1,157 @@
+package inge2.dataflow.zeroanalysis;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of <code>long</code> words split into chunks of {@link #CHUNK_WORDS} words that are never modified
+ * once created. Writing a word copies its chunk, and copying an array only shares the chunk table, so arrays that differ
+ * in a few words share the rest of their storage.
+ *
+ * Words that were never written read as zero, and a <code>null</code> chunk stands for a chunk of zeros.
+ */
+final class PersistentWordArray {
+
+    private static final int CHUNK_SHIFT = 4;
+    static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_WORDS - 1;
+
+    private static final long[][] NO_CHUNKS = new long[0][];
+
+    /**
+     * The chunk table. It may be shared with other arrays while {@link #tableShared} is set.
+     */
+    private long[][] chunks = NO_CHUNKS;
+
+    /**
+     * Set when the chunk table may be referenced by another array, so it has to be copied before writing into it.
+     */
+    private boolean tableShared = false;
+
+    long get(int word) {
+        int chunk = word >>> CHUNK_SHIFT;
+        if (chunk >= this.chunks.length || this.chunks[chunk] == null) {
+            return 0L;
+        }
+        return this.chunks[chunk][word & CHUNK_MASK];
+    }
+
+    void set(int word, long value) {
+        if (this.get(word) == value) {
+            return;
+        }
+
+        int chunk = word >>> CHUNK_SHIFT;
+        long[] updated = this.chunk(chunk) == null ? new long[CHUNK_WORDS] : this.chunk(chunk).clone();
+        updated[word & CHUNK_MASK] = value;
+        this.writableTable(chunk + 1)[chunk] = updated;
+    }
+
+    /**
+     * Makes this array equal to another one, sharing its storage.
+     */
+    void copyFrom(PersistentWordArray another) {
+        if (this.chunks != another.chunks) {
+            this.chunks = another.chunks;
+            this.tableShared = true;
+            another.tableShared = true;
+        }
+    }
+
+    void clear() {
+        this.chunks = NO_CHUNKS;
+        this.tableShared = false;
+    }
+
+    /**
+     * Ors another array into this one. Chunks that gain no bits are kept, and chunks that only this array lacks are
+     * shared with the other one.
+     * @return true if this array changed.
+     */
+    boolean or(PersistentWordArray another) {
+        if (this.chunks == another.chunks) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (int chunk = 0; chunk < another.chunks.length; chunk++) {
+            long[] ours = this.chunk(chunk);
+            long[] theirs = another.chunks[chunk];
+            if (theirs == null || ours == theirs) {
+                continue;
+            }
+
+            long[] joined = orChunks(ours, theirs);
+            if (joined != ours) {
+                this.writableTable(chunk + 1)[chunk] = joined;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    boolean contentEquals(PersistentWordArray another) {
+        if (this.chunks == another.chunks) {
+            return true;
+        }
+
+        int length = Math.max(this.chunks.length, another.chunks.length);
+        for (int chunk = 0; chunk < length; chunk++) {
+            long[] ours = this.chunk(chunk);
+            long[] theirs = another.chunk(chunk);
+            if (ours == theirs) {
+                continue;
+            }
+            for (int word = 0; word < CHUNK_WORDS; word++) {
+                long ourWord = ours == null ? 0L : ours[word];
+                long theirWord = theirs == null ? 0L : theirs[word];
+                if (ourWord != theirWord) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private long[] chunk(int chunk) {
+        return chunk < this.chunks.length ? this.chunks[chunk] : null;
+    }
+
+    /**
+     * Returns a chunk table with at least the given length that only this array references.
+     */
+    private long[][] writableTable(int length) {
+        if (this.tableShared || this.chunks.length < length) {
+            this.chunks = Arrays.copyOf(this.chunks, Math.max(this.chunks.length, length));
+            this.tableShared = false;
+        }
+        return this.chunks;
+    }
+
+    /**
+     * Returns the OR of two chunks, reusing one of them when it already is the result.
+     */
+    private static long[] orChunks(long[] ours, long[] theirs) {
+        if (ours == null) {
+            return theirs;
+        }
+
+        boolean oursCoversTheirs = true;
+        boolean theirsCoversOurs = true;
+        for (int word = 0; word < CHUNK_WORDS; word++) {
+            oursCoversTheirs &= (theirs[word] & ~ours[word]) == 0L;
+            theirsCoversOurs &= (ours[word] & ~theirs[word]) == 0L;
+        }
+        if (oursCoversTheirs) {
+            return ours;
+        }
+        if (theirsCoversOurs) {
+            return theirs;
+        }
+
+        long[] joined = new long[CHUNK_WORDS];
+        for (int word = 0; word < CHUNK_WORDS; word++) {
+            joined[word] = ours[word] | theirs[word];
+        }
+        return joined;
+    }
+}
@@ -0,0 +1,123 @@
+package inge2.dataflow.zeroanalysis;
+
+import soot.Unit;
+import soot.toolkits.graph.DirectedGraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class assigns a priority to each unit of a control flow graph for the worklist of
+ * {@link ZeroAnalysisSolver#SCC_WORKLIST}. Strongly connected components (loops) come in topological order, and the
+ * units inside each component come in reverse postorder. Always taking the pending unit with the lowest priority
+ * stabilizes each loop before any unit downstream of it is evaluated again.
+ */
+class SccWorklistOrder {
+
+    /**
+     * The units, sorted by priority.
+     */
+    private final Unit[] units;
+
+    /**
+     * The priority of each unit, i.e. its position in {@link #units}.
+     */
+    private final Map<Unit, Integer> priorities;
+
+    SccWorklistOrder(DirectedGraph<Unit> graph) {
+        Map<Unit, Integer> reversePostorder = reversePostorder(graph);
+
+        // Kosaraju: recorriendo el grafo invertido desde cada unidad en reverse postorder, cada recorrido nuevo es una
+        // componente, y su raíz es la primera de la componente en reverse postorder. Las componentes ordenadas por esa
+        // unidad quedan en orden topológico.
+        Unit[] byNumber = new Unit[reversePostorder.size()];
+        for (Map.Entry<Unit, Integer> entry : reversePostorder.entrySet()) {
+            byNumber[entry.getValue()] = entry.getKey();
+        }
+        Map<Unit, Integer> componentOrder = new IdentityHashMap<>(byNumber.length * 2);
+        Deque<Unit> pending = new ArrayDeque<>();
+        for (int first = 0; first < byNumber.length; first++) {
+            if (componentOrder.putIfAbsent(byNumber[first], first) != null) {
+                continue;
+            }
+            pending.push(byNumber[first]);
+            while (!pending.isEmpty()) {
+                for (Unit predecessor : graph.getPredsOf(pending.pop())) {
+                    if (componentOrder.putIfAbsent(predecessor, first) == null) {
+                        pending.push(predecessor);
+                    }
+                }
+            }
+        }
+
+        List<Unit> sorted = new ArrayList<>(reversePostorder.keySet());
+        sorted.sort(Comparator.<Unit>comparingInt(componentOrder::get).thenComparingInt(reversePostorder::get));
+
+        this.units = sorted.toArray(new Unit[0]);
+        this.priorities = new IdentityHashMap<>(this.units.length * 2);
+        for (int priority = 0; priority < this.units.length; priority++) {
+            this.priorities.put(this.units[priority], priority);
+        }
+    }
+
+    int size() {
+        return this.units.length;
+    }
+
+    Unit unitAt(int priority) {
+        return this.units[priority];
+    }
+
+    int priorityOf(Unit unit) {
+        return this.priorities.get(unit);
+    }
+
+    /**
+     * Numbers the units in reverse postorder of a depth-first search from the heads. Units that are not reachable from
+     * the heads start new searches.
+     */
+    private static Map<Unit, Integer> reversePostorder(DirectedGraph<Unit> graph) {
+        List<Unit> postorder = new ArrayList<>(graph.size());
+        Map<Unit, Boolean> visited = new IdentityHashMap<>(graph.size() * 2);
+
+        List<Unit> roots = new ArrayList<>(graph.getHeads());
+        for (Unit unit : graph) {
+            roots.add(unit);
+        }
+
+        Deque<Unit> stack = new ArrayDeque<>();
+        Deque<Iterator<Unit>> successors = new ArrayDeque<>();
+        for (Unit root : roots) {
+            if (visited.put(root, true) != null) {
+                continue;
+            }
+            stack.push(root);
+            successors.push(graph.getSuccsOf(root).iterator());
+            while (!stack.isEmpty()) {
+                Iterator<Unit> pending = successors.peek();
+                if (pending.hasNext()) {
+                    Unit successor = pending.next();
+                    if (visited.put(successor, true) == null) {
+                        stack.push(successor);
+                        successors.push(graph.getSuccsOf(successor).iterator());
+                    }
+                } else {
+                    postorder.add(stack.pop());
+                    successors.pop();
+                }
+            }
+        }
+
+        Map<Unit, Integer> numbers = new IdentityHashMap<>(postorder.size() * 2);
+        for (int i = 0; i < postorder.size(); i++) {
+            numbers.put(postorder.get(i), postorder.size() - 1 - i);
+        }
+        return numbers;
+    }
+}
@@ -1,21 +1,45 @@
 package inge2.dataflow.zeroanalysis;
 
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
  * This class represents a mapping of ZeroAbstractValues (BOTTOM, NZ, Z or MZ) to variable names.
+ *
+ * The variables are numbered by a {@link LocalNumbering} and each value is packed as its 2-bit code (see
+ * {@link ZeroAbstractValue#fromBits(int)}) in words of 32 variables. A second bitset tells which variables have a
+ * value. Undefined variables always keep the code 00, so the union of two states is the bitwise OR of their words.
+ *
+ * Both bitsets are {@link PersistentWordArray}s: copying a state shares its storage, and a state that then sets one
+ * variable only copies the chunk holding it. Consecutive program points usually differ in one variable, so the IN
+ * and OUT states Soot keeps for every unit share most of their memory.
  */
 public class ZeroAbstractState {
 
+    private static final int VALUES_PER_WORD = 32;
+    private static final int BITS_PER_WORD = 64;
+
+    /**
+     * The numbering of the variable names, shared by all the states of an analysis.
+     */
+    private final LocalNumbering locals;
+
+    /**
+     * The 2-bit codes of the values, indexed by variable number.
+     */
+    private final PersistentWordArray values = new PersistentWordArray();
+
     /**
-     * This map contains the mapping of variable names to ZeroAbstractValues.
+     * One bit per variable number, set if the variable has a value.
      */
-    private final HashMap<String, ZeroAbstractValue> map;
+    private final PersistentWordArray defined = new PersistentWordArray();
 
     public ZeroAbstractState() {
-        this.map = new HashMap<>();
+        this(new LocalNumbering());
+    }
+
+    public ZeroAbstractState(LocalNumbering locals) {
+        this.locals = locals;
     }
 
     /**
@@ -24,7 +48,8 @@ public class ZeroAbstractState {
      * @return true if the variable has a value, false otherwise.
      */
     public Boolean hasValue(String variable) {
-        return this.map.containsKey(variable);
+        int index = this.locals.indexOf(variable);
+        return index >= 0 && this.isDefined(index);
     }
 
     /**
@@ -33,7 +58,11 @@ public class ZeroAbstractState {
      * @return the value of the variable.
      */
     public ZeroAbstractValue getValue(String variable) {
-        return this.map.get(variable);
+        int index = this.locals.indexOf(variable);
+        if (index < 0 || !this.isDefined(index)) {
+            return null;
+        }
+        return this.valueAt(index);
     }
 
     /**
@@ -43,7 +72,13 @@ public class ZeroAbstractState {
      */
     public void setValue(String variable, ZeroAbstractValue value) {
         if (value != null) {
-            this.map.put(variable, value);
+            int index = this.locals.getOrAssignIndex(variable);
+
+            int word = index / VALUES_PER_WORD;
+            int shift = (index % VALUES_PER_WORD) * 2;
+            this.values.set(word, (this.values.get(word) & ~(3L << shift)) | ((long) value.ordinal() << shift));
+            int definedWord = index / BITS_PER_WORD;
+            this.defined.set(definedWord, this.defined.get(definedWord) | (1L << (index % BITS_PER_WORD)));
         }
     }
 
@@ -52,7 +87,25 @@ public class ZeroAbstractState {
      * @return the defined variables in this mapping.
      */
     public Set<String> getDefinedVariables() {
-        return this.map.keySet();
+        Set<String> variables = new LinkedHashSet<>();
+        for (int index = 0; index < this.locals.size(); index++) {
+            if (this.isDefined(index)) {
+                variables.add(this.locals.nameOf(index));
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * This method returns the amount of defined variables in this mapping, without building their set.
+     * @return the amount of defined variables.
+     */
+    public int size() {
+        int size = 0;
+        for (int word = 0; word * BITS_PER_WORD < this.locals.size(); word++) {
+            size += Long.bitCount(this.defined.get(word));
+        }
+        return size;
     }
 
     /**
@@ -61,28 +114,48 @@ public class ZeroAbstractState {
      * @return the union of this state with another state.
      */
     public ZeroAbstractState union(ZeroAbstractState another) {
+        // creamos copia del actual con los mismos valores y le mergeamos el otro
+        ZeroAbstractState res = new ZeroAbstractState(this.locals);
+        res.copyFrom(this);
+        res.joinWith(another);
+        return res;
+    }
+
+    /**
+     * This method merges another state into this one (this = this U another), without allocating a new state.
+     * @param another the other state. It may be this same state.
+     * @return true if this state changed.
+     */
+    public boolean joinWith(ZeroAbstractState another) {
+        if (this == another) {
+            return false;
+        }
 
-        // creamos copia del actual con los mismos valores
-        ZeroAbstractState res = new ZeroAbstractState();
-        res.putAll(this);
-
-        // para el otro conjunto, si una variable está en ambos, los mergeamos
-        // si no lo agregamos
-        for (String anotherName : another.map.keySet()) {
-            if(res.hasValue(anotherName)){
-                res.setValue(anotherName, res.getValue(anotherName).merge(another.getValue(anotherName)));
-            }else{
-                res.setValue(anotherName,another.getValue(anotherName));
+        if (this.locals != another.locals) {
+            // para el otro conjunto, si una variable está en ambos, los mergeamos
+            // si no lo agregamos
+            boolean changed = false;
+            for (String anotherName : another.getDefinedVariables()) {
+                ZeroAbstractValue current = this.getValue(anotherName);
+                ZeroAbstractValue merged = current == null ? another.getValue(anotherName) : current.merge(another.getValue(anotherName));
+                if (merged != current) {
+                    this.setValue(anotherName, merged);
+                    changed = true;
+                }
             }
+            return changed;
         }
-        return res;
+
+        // misma numeración: el supremo de cada variable es el OR de sus códigos
+        return this.values.or(another.values) | this.defined.or(another.defined);
     }
 
     /**
      * Clears the state.
      */
     public void clear() {
-        this.map.clear();
+        this.values.clear();
+        this.defined.clear();
     }
 
     /**
@@ -90,12 +163,47 @@ public class ZeroAbstractState {
      * @param another the other state.
      */
     public void putAll(ZeroAbstractState another) {
-        this.map.putAll(another.map);
+        if (this.locals != another.locals) {
+            for (String anotherName : another.getDefinedVariables()) {
+                this.setValue(anotherName, another.getValue(anotherName));
+            }
+            return;
+        }
+
+        for (int word = 0; word < valuesWordsFor(this.locals.size()); word++) {
+            // los valores definidos en el otro estado pisan a los de este
+            long overwritten = spreadDefinedBits(another.defined.get(word / 2), word);
+            this.values.set(word, (this.values.get(word) & ~overwritten) | another.values.get(word));
+        }
+        this.defined.or(another.defined);
+    }
+
+    /**
+     * Makes this state equal to another state. When both states share the same {@link LocalNumbering} the storage is
+     * shared instead of copied.
+     * @param another the other state.
+     */
+    public void copyFrom(ZeroAbstractState another) {
+        if (this.locals != another.locals) {
+            this.clear();
+            this.putAll(another);
+            return;
+        }
+
+        this.values.copyFrom(another.values);
+        this.defined.copyFrom(another.defined);
     }
 
     @Override
     public String toString() {
-        return "ZeroAbstractState{" + this.map + "}";
+        StringBuilder builder = new StringBuilder("ZeroAbstractState{{");
+        for (String variable : this.getDefinedVariables()) {
+            if (builder.length() > "ZeroAbstractState{{".length()) {
+                builder.append(", ");
+            }
+            builder.append(variable).append('=').append(this.getValue(variable));
+        }
+        return builder.append("}}").toString();
     }
 
     @Override
@@ -103,11 +211,59 @@ public class ZeroAbstractState {
         if (this == o) return true;
         if (!(o instanceof ZeroAbstractState)) return false;
         ZeroAbstractState that = (ZeroAbstractState) o;
-        return Objects.equals(this.map, that.map);
+        if (this.locals == that.locals) {
+            return this.values.contentEquals(that.values) && this.defined.contentEquals(that.defined);
+        }
+
+        Set<String> variables = this.getDefinedVariables();
+        if (!variables.equals(that.getDefinedVariables())) {
+            return false;
+        }
+        for (String variable : variables) {
+            if (this.getValue(variable) != that.getValue(variable)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(this.map);
+        // Hash por nombre para que sea consistente con equals entre numeraciones distintas.
+        int hash = 0;
+        for (int index = 0; index < this.locals.size(); index++) {
+            if (this.isDefined(index)) {
+                hash += this.locals.nameOf(index).hashCode() ^ this.valueAt(index).hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private boolean isDefined(int index) {
+        return (this.defined.get(index / BITS_PER_WORD) & (1L << (index % BITS_PER_WORD))) != 0;
+    }
+
+    private ZeroAbstractValue valueAt(int index) {
+        int shift = (index % VALUES_PER_WORD) * 2;
+        return ZeroAbstractValue.fromBits((int) (this.values.get(index / VALUES_PER_WORD) >>> shift) & 3);
+    }
+
+    private static int valuesWordsFor(int variables) {
+        return (variables + VALUES_PER_WORD - 1) / VALUES_PER_WORD;
+    }
+
+    /**
+     * Returns a mask with both bits of each variable of the given values word set if the variable is defined.
+     * @param definedWord the defined bits word that covers the values word.
+     * @param valuesWord the index of the values word.
+     */
+    private static long spreadDefinedBits(long definedWord, int valuesWord) {
+        long bits = (definedWord >>> ((valuesWord % 2) * VALUES_PER_WORD)) & 0xFFFFFFFFL;
+        bits = (bits | (bits << 16)) & 0x0000FFFF0000FFFFL;
+        bits = (bits | (bits << 8)) & 0x00FF00FF00FF00FFL;
+        bits = (bits | (bits << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        bits = (bits | (bits << 2)) & 0x3333333333333333L;
+        bits = (bits | (bits << 1)) & 0x5555555555555555L;
+        return bits | (bits << 1);
     }
 }
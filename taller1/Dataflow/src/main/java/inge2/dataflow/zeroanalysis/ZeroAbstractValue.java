@@ -39,25 +39,55 @@ public enum ZeroAbstractValue {
         this.name = name;
     }
 
+    /*
+     * Lookup tables for the binary operations, indexed by [this.ordinal()][another.ordinal()].
+     * The order of the constants matters: BOTTOM (00), NOT_ZERO (01), ZERO (10) and MAYBE_ZERO (11) are chosen so that
+     * the supremum of two values is the bitwise OR of their ordinals.
+     */
+    private static final ZeroAbstractValue[] VALUES = values();
+
+    private static final ZeroAbstractValue[][] ADD_TABLE = {
+            //            BOTTOM  NOT_ZERO    ZERO        MAYBE_ZERO
+            /* BOTTOM */ {BOTTOM, BOTTOM,     BOTTOM,     BOTTOM},
+            /* NZ     */ {BOTTOM, MAYBE_ZERO, NOT_ZERO,   MAYBE_ZERO},
+            /* ZERO   */ {BOTTOM, NOT_ZERO,   ZERO,       MAYBE_ZERO},
+            /* MZ     */ {BOTTOM, MAYBE_ZERO, MAYBE_ZERO, MAYBE_ZERO},
+    };
+
+    private static final ZeroAbstractValue[][] SUBTRACT_TABLE = ADD_TABLE;
+
+    private static final ZeroAbstractValue[][] MULTIPLY_TABLE = {
+            //            BOTTOM  NOT_ZERO    ZERO        MAYBE_ZERO
+            /* BOTTOM */ {BOTTOM, BOTTOM,     BOTTOM,     BOTTOM},
+            /* NZ     */ {BOTTOM, NOT_ZERO,   ZERO,       MAYBE_ZERO},
+            /* ZERO   */ {BOTTOM, ZERO,       ZERO,       ZERO},
+            /* MZ     */ {BOTTOM, MAYBE_ZERO, ZERO,       MAYBE_ZERO},
+    };
+
+    private static final ZeroAbstractValue[][] DIVIDE_TABLE = {
+            //            BOTTOM  NOT_ZERO    ZERO        MAYBE_ZERO
+            /* BOTTOM */ {BOTTOM, BOTTOM,     BOTTOM,     BOTTOM},
+            /* NZ     */ {BOTTOM, MAYBE_ZERO, BOTTOM,     MAYBE_ZERO},
+            /* ZERO   */ {BOTTOM, ZERO,       BOTTOM,     ZERO},
+            /* MZ     */ {BOTTOM, MAYBE_ZERO, BOTTOM,     MAYBE_ZERO},
+    };
+
+    /**
+     * Returns the ZeroAbstractValue encoded by the given 2-bit code (see {@link #ordinal()}).
+     * @param bits the code, between 0 and 3.
+     * @return the ZeroAbstractValue for the code.
+     */
+    public static ZeroAbstractValue fromBits(int bits) {
+        return VALUES[bits];
+    }
+
     /**
      * Returns the result of the addition between this ZeroAbstractValue and another.
      * @param another the other ZeroAbstractValue.
      * @return the result of the addition.
      */
     public ZeroAbstractValue add(ZeroAbstractValue another) {
-        if(this.name.equals(ZeroAbstractValue.BOTTOM.toString()) || another.name.equals(ZeroAbstractValue.BOTTOM.toString())){
-            return ZeroAbstractValue.BOTTOM;
-        }
-        if(this.name.equals(ZeroAbstractValue.ZERO.toString()) && another.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.ZERO;
-        }
-        if(this.name.equals(ZeroAbstractValue.NOT_ZERO.toString()) && another.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.NOT_ZERO;
-        }
-        if(this.name.equals(ZeroAbstractValue.ZERO.toString()) && another.name.equals(ZeroAbstractValue.NOT_ZERO.toString())){
-            return ZeroAbstractValue.NOT_ZERO;
-        }
-        return ZeroAbstractValue.MAYBE_ZERO;
+        return ADD_TABLE[this.ordinal()][another.ordinal()];
     }
 
     /**
@@ -66,16 +96,7 @@ public enum ZeroAbstractValue {
      * @return the result of the division.
      */
     public ZeroAbstractValue divideBy(ZeroAbstractValue another) {
-        if(this.name.equals(ZeroAbstractValue.BOTTOM.toString()) || another.name.equals(ZeroAbstractValue.BOTTOM.toString())){
-            return ZeroAbstractValue.BOTTOM;
-        }
-        else if(another.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.BOTTOM;
-        }
-        else if(this.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.ZERO;
-        }
-        return ZeroAbstractValue.MAYBE_ZERO;
+        return DIVIDE_TABLE[this.ordinal()][another.ordinal()];
     }
 
     /**
@@ -84,16 +105,7 @@ public enum ZeroAbstractValue {
      * @return the result of the multiplication.
      */
     public ZeroAbstractValue multiplyBy(ZeroAbstractValue another) {
-        if(this.name.equals(ZeroAbstractValue.BOTTOM.toString()) || another.name.equals(ZeroAbstractValue.BOTTOM.toString())){
-            return ZeroAbstractValue.BOTTOM;
-        }
-        if(this.name.equals(ZeroAbstractValue.ZERO.toString()) || another.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.ZERO;
-        }
-        if(this.name.equals(ZeroAbstractValue.NOT_ZERO.toString()) && another.name.equals(ZeroAbstractValue.NOT_ZERO.toString())){
-            return ZeroAbstractValue.NOT_ZERO;
-        }
-        return ZeroAbstractValue.MAYBE_ZERO;
+        return MULTIPLY_TABLE[this.ordinal()][another.ordinal()];
     }
 
     /**
@@ -102,19 +114,7 @@ public enum ZeroAbstractValue {
      * @return the result of the subtraction.
      */
     public ZeroAbstractValue subtract(ZeroAbstractValue another) {
-        if(this.name.equals(ZeroAbstractValue.BOTTOM.toString()) || another.name.equals(ZeroAbstractValue.BOTTOM.toString())){
-            return ZeroAbstractValue.BOTTOM;
-        }
-        if(this.name.equals(ZeroAbstractValue.ZERO.toString()) && another.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.ZERO;
-        }
-        if(this.name.equals(ZeroAbstractValue.NOT_ZERO.toString()) && another.name.equals(ZeroAbstractValue.ZERO.toString())){
-            return ZeroAbstractValue.NOT_ZERO;
-        }
-        if(this.name.equals(ZeroAbstractValue.ZERO.toString()) && another.name.equals(ZeroAbstractValue.NOT_ZERO.toString())){
-            return ZeroAbstractValue.NOT_ZERO;
-        }
-        return ZeroAbstractValue.MAYBE_ZERO;
+        return SUBTRACT_TABLE[this.ordinal()][another.ordinal()];
     }
 
     /**
@@ -123,16 +123,8 @@ public enum ZeroAbstractValue {
      * @return the result of the merge.
      */
     public ZeroAbstractValue merge(ZeroAbstractValue another) {
-        // tomamos supremo al ser un análisis conservador
-        if(this.name.equals(ZeroAbstractValue.MAYBE_ZERO.toString()) || another.name.equals(ZeroAbstractValue.MAYBE_ZERO.toString())){
-            // si alguno es MAYBE ZERO, el supremo siempre es MAYBE ZERO
-            return ZeroAbstractValue.MAYBE_ZERO;
-        }
-        if(this.name.equals(ZeroAbstractValue.BOTTOM.toString()) && !another.name.equals(ZeroAbstractValue.BOTTOM.toString())){
-            // si alguno es BOTTOM, el supremo va a ser el valor del otro operando
-            return another;
-        }
-        return this;
+        // tomamos supremo al ser un análisis conservador: con este orden de las constantes es el OR de los ordinales
+        return VALUES[this.ordinal() | another.ordinal()];
     }
 
 }
@@ -0,0 +1,49 @@
+package inge2.dataflow.zeroanalysis;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The fixpoint solvers available for {@link DivisionByZeroAnalysis}.
+ */
+public enum ZeroAnalysisSolver {
+
+    /**
+     * Soot's {@link soot.toolkits.scalar.ForwardFlowAnalysis} iteration.
+     */
+    SOOT,
+
+    /**
+     * A worklist ordered by the strongly connected components of the control flow graph (see {@link SccWorklistOrder}),
+     * that only re-queues the successors whose IN state changed.
+     */
+    SCC_WORKLIST,
+
+    /**
+     * A sparse solver that propagates the value of each definition along its def-use chains only, instead of pushing
+     * the whole state through every unit. IN states are rebuilt on demand from the reaching definitions.
+     */
+    SPARSE;
+
+    /**
+     * The system property used by the launcher to choose the solver, e.g. <code>-DzeroAnalysis.solver=scc_worklist</code>.
+     */
+    public static final String SYSTEM_PROPERTY = "zeroAnalysis.solver";
+
+    /**
+     * Returns the solver chosen with the {@link #SYSTEM_PROPERTY} system property, or {@link #SOOT} if not set.
+     * @return the solver.
+     */
+    public static ZeroAnalysisSolver fromSystemProperty() {
+        String name = System.getProperty(SYSTEM_PROPERTY);
+        if (name == null || name.isEmpty()) {
+            return SOOT;
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + SYSTEM_PROPERTY + " '" + name + "', expected one of "
+                    + Arrays.toString(values()).toLowerCase(Locale.ROOT), e);
+        }
+    }
+}
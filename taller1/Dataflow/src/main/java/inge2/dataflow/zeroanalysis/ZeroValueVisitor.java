@@ -3,6 +3,9 @@ package inge2.dataflow.zeroanalysis;
 import inge2.dataflow.util.visitor.AbstractValueVisitor;
 import inge2.dataflow.util.visitor.ValueVisitor;
 import soot.Local;
+import soot.PrimType;
+import soot.Value;
+import soot.jimple.InvokeExpr;
 import soot.jimple.ParameterRef;
 
 /**
@@ -12,7 +15,7 @@ public class ZeroValueVisitor extends AbstractValueVisitor<ZeroAbstractValue> {
     /**
      * The IN state that affect the expression being analyzed.
      */
-    private final ZeroAbstractState state;
+    private ZeroAbstractState state;
 
     /**
      * The resolved ZeroAbstractValue for the expression being analyzed.
@@ -25,18 +28,86 @@ public class ZeroValueVisitor extends AbstractValueVisitor<ZeroAbstractValue> {
     private Boolean possibleDivisionByZero;
     private ZeroAbstractValue value;
 
+    /**
+     * The values of the parameters of the analyzed method, or null if they are all MAYBE_ZERO.
+     */
+    private ZeroAbstractValue[] parameterValues;
+
+    /**
+     * The summaries used to resolve the value returned by invocations, or null to consider it MAYBE_ZERO.
+     */
+    private MethodSummaries summaries;
+
     public ZeroValueVisitor(ZeroAbstractState state) {
         this.state = state;
         this.possibleDivisionByZero = false;
     }
 
+    /**
+     * Prepares this visitor to analyze a new expression against the given IN state, so a single visitor can be reused
+     * for every statement of an analysis.
+     * @param state the IN state that affect the expression.
+     * @return this visitor.
+     */
+    public ZeroValueVisitor reset(ZeroAbstractState state) {
+        this.state = state;
+        this.resolvedValue = null;
+        this.possibleDivisionByZero = false;
+        return this;
+    }
+
+    /**
+     * The resolved value only depends on the last visited expression, so operands are evaluated by this visitor.
+     */
+    @Override
+    protected boolean evaluatesInPlace() {
+        return true;
+    }
+
+    /**
+     * Sets the context of the analyzed method: the values of its parameters and the summaries of the methods it calls.
+     * @param parameterValues the value of each parameter, or null to consider them all MAYBE_ZERO.
+     * @param summaries the summaries of the called methods, or null to consider every returned value MAYBE_ZERO.
+     */
+    void setCallContext(ZeroAbstractValue[] parameterValues, MethodSummaries summaries) {
+        this.parameterValues = parameterValues;
+        this.summaries = summaries;
+    }
+
     /**
      * This method is called when the expression being analyzed is a parameter.
      * @param parameter the parameter.
      */
     @Override
     protected void visitParameterRef(ParameterRef parameter) {
-        resolvedValue = ZeroAbstractValue.MAYBE_ZERO;
+        if (parameterValues != null && parameterValues[parameter.getIndex()] != null) {
+            resolvedValue = parameterValues[parameter.getIndex()];
+        } else {
+            resolvedValue = ZeroAbstractValue.MAYBE_ZERO;
+        }
+    }
+
+    /**
+     * This method is called when the expression being analyzed is a method invocation. Without summaries, or if some
+     * invoked method has no summary, the returned value is MAYBE_ZERO.
+     * @param invoke the invocation.
+     */
+    @Override
+    protected void visitInvokeExpression(InvokeExpr invoke) {
+        if (summaries == null) {
+            visitUnsupportedValue(invoke);
+            return;
+        }
+
+        // Los argumentos son locales o constantes, así que se evalúan con este mismo visitor. Los que no son de tipo
+        // primitivo no forman parte de los resúmenes.
+        ZeroAbstractValue[] arguments = new ZeroAbstractValue[invoke.getArgCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            if (invoke.getMethodRef().getParameterType(i) instanceof PrimType) {
+                arguments[i] = visit(invoke.getArg(i)).done();
+            }
+        }
+        resolvedValue = summaries.returnValue(invoke, arguments);
     }
 
     /**
@@ -112,6 +183,16 @@ public class ZeroValueVisitor extends AbstractValueVisitor<ZeroAbstractValue> {
         }
     }
 
+    /**
+     * This method is called for the expressions this visitor does not cover, such as invocations or casts, when the
+     * policy is {@link inge2.dataflow.util.visitor.UnsupportedValuePolicy#TOP}.
+     * @param value the expression.
+     */
+    @Override
+    protected void visitTop(Value value) {
+        resolvedValue = ZeroAbstractValue.MAYBE_ZERO;
+    }
+
     /**
      * Method called after this visitor has finished analyzing the expression.
      * @return the ZeroAbstractValue for the expression.
@@ -123,7 +204,10 @@ public class ZeroValueVisitor extends AbstractValueVisitor<ZeroAbstractValue> {
 
     @Override
     public ValueVisitor<ZeroAbstractValue> cloneVisitor() {
-        return new ZeroValueVisitor(state);
+        ZeroValueVisitor clone = new ZeroValueVisitor(state);
+        clone.setUnsupportedValuePolicy(getUnsupportedValuePolicy());
+        clone.setCallContext(parameterValues, summaries);
+        return clone;
     }
 
     /**
@@ -0,0 +1,119 @@
+package inge2.dataflow.scalability;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes the sources of the synthetic targets of the scalability gate, one class per size:
+ * <code>inge2.dataflow.targets.scalability.ScalabilityTarget&lt;size&gt;</code>. Each class has one method for each
+ * shape that used to make the analysis blow up:
+ * <ul>
+ *     <li><code>locals</code>: a straight line of <code>size</code> int locals, with a division every few statements.</li>
+ *     <li><code>nestedLoops</code>: <code>size / 25</code> nested loops, each with an if/else that divides.</li>
+ *     <li><code>wideSwitch</code>: a switch with <code>size</code> cases that define and divide by a local.</li>
+ * </ul>
+ * The generated sources are compiled by the build, with debug information so the original local names are kept.
+ *
+ * Usage: <code>CorpusGenerator &lt;output dir&gt; &lt;size&gt;...</code>
+ */
+public class CorpusGenerator {
+
+    public static final String PACKAGE = "inge2.dataflow.targets.scalability";
+
+    /**
+     * One statement out of this many in <code>locals</code> is a division.
+     */
+    private static final int DIVISION_EVERY = 8;
+
+    /**
+     * The amount of statements each loop adds to <code>nestedLoops</code>.
+     */
+    private static final int STATEMENTS_PER_LOOP = 25;
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Paths.get(args[0]);
+        Path packageDir = outputDir.resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(packageDir);
+
+        for (int i = 1; i < args.length; i++) {
+            int size = Integer.parseInt(args[i]);
+            Path source = packageDir.resolve(className(size) + ".java");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(source, StandardCharsets.UTF_8))) {
+                writeClass(out, size);
+            }
+        }
+    }
+
+    public static String className(int size) {
+        return "ScalabilityTarget" + size;
+    }
+
+    private static void writeClass(PrintWriter out, int size) {
+        out.println("package " + PACKAGE + ";");
+        out.println();
+        out.println("// Generated by " + CorpusGenerator.class.getName() + ", do not edit.");
+        out.println("public class " + className(size) + " {");
+        writeLocals(out, size);
+        writeNestedLoops(out, Math.max(1, size / STATEMENTS_PER_LOOP));
+        writeWideSwitch(out, size);
+        out.println("}");
+    }
+
+    private static void writeLocals(PrintWriter out, int size) {
+        out.println("    public int locals(int n, int m) {");
+        out.println("        int v0 = n;");
+        for (int i = 1; i < size; i++) {
+            if (i % DIVISION_EVERY == 0) {
+                // Divide por una variable que puede ser cero, según los valores anteriores.
+                out.println("        int v" + i + " = v" + (i - 1) + " / v" + (i / 2) + ";");
+            } else if (i % 3 == 0) {
+                out.println("        int v" + i + " = v" + (i - 1) + " * m;");
+            } else {
+                out.println("        int v" + i + " = v" + (i - 1) + " - " + (i % 5) + ";");
+            }
+        }
+        out.println("        return v" + (size - 1) + ";");
+        out.println("    }");
+        out.println();
+    }
+
+    private static void writeNestedLoops(PrintWriter out, int depth) {
+        out.println("    public int nestedLoops(int n, int m) {");
+        out.println("        int acc = m;");
+        StringBuilder indent = new StringBuilder("        ");
+        for (int i = 0; i < depth; i++) {
+            out.println(indent + "for (int i" + i + " = 0; i" + i + " < n; i" + i + "++) {");
+            indent.append("    ");
+            out.println(indent + "if (acc == i" + i + ") {");
+            out.println(indent + "    acc = m / (acc - i" + i + ");");
+            out.println(indent + "} else {");
+            out.println(indent + "    acc = acc + i" + i + ";");
+            out.println(indent + "}");
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            indent.setLength(indent.length() - 4);
+            out.println(indent + "}");
+        }
+        out.println("        return acc;");
+        out.println("    }");
+        out.println();
+    }
+
+    private static void writeWideSwitch(PrintWriter out, int cases) {
+        out.println("    public int wideSwitch(int k, int m) {");
+        out.println("        int x = 1;");
+        out.println("        switch (k) {");
+        for (int i = 0; i < cases; i++) {
+            out.println("            case " + i + ":");
+            out.println("                x = " + (i % 3 == 0 ? "0" : "k - " + i) + ";");
+            out.println("                break;");
+        }
+        out.println("        }");
+        out.println("        return m / x;");
+        out.println("    }");
+    }
+}
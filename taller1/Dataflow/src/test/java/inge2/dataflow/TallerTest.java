@@ -1,13 +1,54 @@
 package inge2.dataflow;
 
+import inge2.dataflow.util.StreamUtils;
+import inge2.dataflow.util.soot.CfgFlavour;
+import inge2.dataflow.util.soot.UnitGraphProvider;
+import inge2.dataflow.zeroanalysis.CallGraphAlgorithm;
 import inge2.dataflow.zeroanalysis.DivisionByZeroAnalysis;
+import inge2.dataflow.zeroanalysis.DivisionByZeroCache;
+import inge2.dataflow.zeroanalysis.DivisionByZeroFinding;
+import inge2.dataflow.zeroanalysis.DivisionByZeroRegistry;
+import inge2.dataflow.zeroanalysis.DivisionByZeroResult;
+import inge2.dataflow.zeroanalysis.DivisorQuery;
+import inge2.dataflow.zeroanalysis.LocalNumbering;
+import inge2.dataflow.zeroanalysis.ZeroAnalysisSolver;
 import inge2.dataflow.zeroanalysis.ZeroAbstractState;
 import inge2.dataflow.zeroanalysis.ZeroAbstractValue;
 import org.junit.jupiter.api.Test;
+import soot.Body;
+import soot.Local;
+import soot.Scene;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.DivExpr;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
+import javax.management.ObjectName;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TallerTest {
@@ -123,4 +164,475 @@ public class TallerTest {
         assertEquals(ZeroAbstractValue.NOT_ZERO, inState.getValue("j"));
         assertEquals(ZeroAbstractValue.NOT_ZERO, inState.getValue("d"));
     }
+
+    @Test
+    public void testTarget8() {
+        Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis8");
+        DivisionByZeroAnalysis zeroAnalysis = Launcher.getLastDivisionByZeroAnalysis();
+
+        Map<Integer, String> divisionsByZero = zeroAnalysis.getPossibleDivisionByZeroExpressions();
+        assertEquals(1, divisionsByZero.size());
+        assertTrue(divisionsByZero.containsKey(7));
+        assertEquals("j = y / x", divisionsByZero.get(7));
+
+        ZeroAbstractState inState = zeroAnalysis.getINStateForLineNumber(8);
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("x"));
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("y"));
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("j"));
+    }
+
+    @Test
+    public void testTarget9() {
+        Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis9");
+        DivisionByZeroResult result = Launcher.getLastDivisionByZeroAnalysis().getResult();
+
+        // Las dos divisiones de la línea 6 se reportan, en el orden del código.
+        List<Unit> offendingUnits = result.getOffendingUnitsForLine(6);
+        assertEquals(2, offendingUnits.size());
+        assertEquals("j = n / x", offendingUnits.get(0).toString());
+        assertEquals("k = m / x", offendingUnits.get(1).toString());
+        assertEquals(offendingUnits, result.getOffendingUnits());
+        assertTrue(result.getOffendingUnitsForLine(7).isEmpty());
+
+        assertEquals(ZeroAbstractValue.ZERO, result.getINState(offendingUnits.get(1)).getValue("x"));
+        assertTrue(result.getOUTState(offendingUnits.get(0)).hasValue("j"));
+        assertTrue(result.getINState(offendingUnits.get(1)).hasValue("j"));
+        assertFalse(result.getINState(offendingUnits.get(1)).hasValue("k"));
+        assertEquals(result.getINState(result.getUnitsForLine(6).get(0)), result.getINStateForLineNumber(6));
+    }
+
+    @Test
+    public void testTarget5WithSccWorklistSolver() {
+        System.setProperty(ZeroAnalysisSolver.SYSTEM_PROPERTY, "scc_worklist");
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis5");
+        } finally {
+            System.clearProperty(ZeroAnalysisSolver.SYSTEM_PROPERTY);
+        }
+        DivisionByZeroAnalysis zeroAnalysis = Launcher.getLastDivisionByZeroAnalysis();
+
+        Map<Integer, String> divisionsByZero = zeroAnalysis.getPossibleDivisionByZeroExpressions();
+        assertEquals(0, divisionsByZero.size());
+
+        ZeroAbstractState inState = zeroAnalysis.getINStateForLineNumber(11);
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("x"));
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("y"));
+    }
+
+    @Test
+    public void testTarget7WithSparseSolver() {
+        System.setProperty(ZeroAnalysisSolver.SYSTEM_PROPERTY, "sparse");
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis7");
+        } finally {
+            System.clearProperty(ZeroAnalysisSolver.SYSTEM_PROPERTY);
+        }
+        DivisionByZeroAnalysis zeroAnalysis = Launcher.getLastDivisionByZeroAnalysis();
+
+        Map<Integer, String> divisionsByZero = zeroAnalysis.getPossibleDivisionByZeroExpressions();
+        assertEquals(1, divisionsByZero.size());
+        assertEquals("d = j / i", divisionsByZero.get(7));
+
+        ZeroAbstractState inState = zeroAnalysis.getINStateForLineNumber(13);
+        assertEquals(ZeroAbstractValue.ZERO, inState.getValue("i"));
+        assertEquals(ZeroAbstractValue.NOT_ZERO, inState.getValue("j"));
+        assertEquals(ZeroAbstractValue.NOT_ZERO, inState.getValue("d"));
+    }
+
+    @Test
+    public void testProcessDir() {
+        // El primer elemento del class path de Soot es el jar con los targets.
+        String jarPath = System.getProperty("sootClassPath").split(File.pathSeparator)[0];
+        Launcher.analyzeProcessDir(jarPath, 4);
+        DivisionByZeroRegistry registry = Launcher.getRegistry();
+
+        assertTrue(registry.getAnalyzedMethods().contains("<inge2.dataflow.targets.ZeroAnalysis1: void <init>()>"));
+        assertEquals(0, registry.getFindings("<inge2.dataflow.targets.ZeroAnalysis5: int func(int)>").size());
+
+        assertEquals(Collections.singletonList(new DivisionByZeroFinding(7, "j = y / x")),
+                registry.getFindings("<inge2.dataflow.targets.ZeroAnalysis8: int func(java.lang.String,long)>"));
+    }
+
+    @Test
+    public void testDivisorQuery() {
+        // La consulta de cada división coincide con el valor del divisor que calcula el análisis completo.
+        for (int i = 1; i <= 10; i++) {
+            String className = "inge2.dataflow.targets.ZeroAnalysis" + i;
+            for (Body body : WarmSession.loadClass(System.getProperty("sootClassPath"), className)) {
+                ExceptionalUnitGraph graph = new ExceptionalUnitGraph(body);
+                DivisionByZeroResult result = new DivisionByZeroAnalysis(graph).getResult();
+                DivisorQuery query = new DivisorQuery(graph);
+                for (Unit unit : body.getUnits()) {
+                    if (!DivisorQuery.isDivision(unit)) {
+                        continue;
+                    }
+                    Value divisor = ((DivExpr) ((DefinitionStmt) unit).getRightOp()).getOp2();
+                    if (!(divisor instanceof Local)) {
+                        continue;
+                    }
+                    String name = ((Local) divisor).getName();
+                    ZeroAbstractState inState = result.getINState(unit);
+                    ZeroAbstractValue expected = inState.hasValue(name) ? inState.getValue(name) : ZeroAbstractValue.ZERO;
+                    boolean mayBeZero = expected == ZeroAbstractValue.ZERO || expected == ZeroAbstractValue.MAYBE_ZERO;
+                    assertEquals(mayBeZero, query.mayBeZero(unit), className + ": " + unit);
+                    if (!mayBeZero) {
+                        assertEquals(expected, query.divisorValue(unit), className + ": " + unit);
+                    }
+                }
+            }
+        }
+
+        Map<String, Map<Unit, ZeroAbstractValue>> divisors = Launcher.queryDivisors("inge2.dataflow.targets.ZeroAnalysis9", 6);
+        Map<Unit, ZeroAbstractValue> values = divisors.get("<inge2.dataflow.targets.ZeroAnalysis9: int func(int,int)>");
+        assertEquals(2, values.size());
+        assertTrue(values.values().stream().allMatch(value -> value == ZeroAbstractValue.ZERO));
+    }
+
+    @Test
+    public void testInterproceduralAnalysis() {
+        String signature = "<inge2.dataflow.targets.ZeroAnalysis10: int func(int)>";
+        Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis10");
+        assertEquals(3, Launcher.getRegistry().getFindings(signature).size());
+
+        // Con los resúmenes de identity y countdown solo queda la división por identity(0).
+        String jarPath = System.getProperty("sootClassPath").split(File.pathSeparator)[0];
+        System.setProperty(CallGraphAlgorithm.SYSTEM_PROPERTY, "cha");
+        try {
+            Launcher.analyzeProcessDir(jarPath, 4);
+        } finally {
+            System.clearProperty(CallGraphAlgorithm.SYSTEM_PROPERTY);
+        }
+
+        assertEquals(Collections.singletonList(new DivisionByZeroFinding(17, "b = 10 / $stack7")),
+                Launcher.getRegistry().getFindings(signature));
+    }
+
+    @Test
+    public void testCfgFlavour() {
+        String signature = "<inge2.dataflow.targets.ZeroAnalysis2: int func(int,int)>";
+        System.setProperty(CfgFlavour.SYSTEM_PROPERTY, "pruned");
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis2");
+        } finally {
+            System.clearProperty(CfgFlavour.SYSTEM_PROPERTY);
+        }
+        assertEquals(Collections.singletonList(new DivisionByZeroFinding(7, "j = m / x")),
+                Launcher.getRegistry().getFindings(signature));
+
+        // El método no tiene traps, así que el grafo podado no tiene flujo excepcional. Los grafos se liberan al terminar
+        // la corrida: pedirlo de nuevo lo construye, y después se reutiliza.
+        UnitGraphProvider graphs = Launcher.getGraphs();
+        assertEquals(CfgFlavour.PRUNED, graphs.getFlavour());
+        long builtGraphs = graphs.getBuiltGraphs();
+        assertEquals(Launcher.getMetrics().getAnalyzedMethodCount(), builtGraphs);
+        Body body = Scene.v().getMethod(signature).getActiveBody();
+        assertEquals(0, graphs.getBuildNanos(body));
+        UnitGraph graph = graphs.getGraph(body);
+        assertTrue(graph instanceof BriefUnitGraph);
+        assertSame(graph, graphs.getGraph(body));
+        assertEquals(builtGraphs + 1, graphs.getBuiltGraphs());
+        graphs.release(body);
+    }
+
+    @Test
+    public void testFindingsOutput() throws IOException {
+        Path output = Files.createTempFile("findings", ".jsonl");
+        System.setProperty(FindingsWriter.SYSTEM_PROPERTY, output.toString());
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis2");
+        } finally {
+            System.clearProperty(FindingsWriter.SYSTEM_PROPERTY);
+        }
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        Files.delete(output);
+        assertEquals(1, lines.size());
+        assertEquals("{\"method\":\"<inge2.dataflow.targets.ZeroAnalysis2: int func(int,int)>\",\"line\":7,\"expression\":\"j = m / x\"}", lines.get(0));
+
+        // Las líneas de cada método se escriben apenas se analiza, sin esperar a que se cierre el archivo.
+        StringWriter written = new StringWriter();
+        FindingsWriter writer = new FindingsWriter(new BufferedWriter(written));
+        writer.write("<A: int f(int)>", Collections.singletonList(new DivisionByZeroFinding(7, "j = m / x")));
+        assertEquals("{\"method\":\"<A: int f(int)>\",\"line\":7,\"expression\":\"j = m / x\"}\n", written.toString());
+    }
+
+    @Test
+    public void testAllFindingsOfALine() throws IOException {
+        // Las dos divisiones de la línea 6 de ZeroAnalysis9 se reportan, también cuando se sirven desde el cache.
+        String signature = "<inge2.dataflow.targets.ZeroAnalysis9: int func(int,int)>";
+        List<DivisionByZeroFinding> expected = Arrays.asList(
+                new DivisionByZeroFinding(6, "j = n / x"), new DivisionByZeroFinding(6, "k = m / x"));
+        String jarPath = System.getProperty("sootClassPath").split(File.pathSeparator)[0];
+        Path cacheDir = Files.createTempDirectory("zero-analysis-cache");
+        Path output = Files.createTempFile("findings", ".jsonl");
+        System.setProperty(DivisionByZeroCache.SYSTEM_PROPERTY, cacheDir.toString());
+        System.setProperty(FindingsWriter.SYSTEM_PROPERTY, output.toString());
+        try {
+            Launcher.analyzeProcessDir(jarPath, 4);
+            assertEquals(expected, Launcher.getRegistry().getFindings(signature));
+            Launcher.analyzeProcessDir(jarPath, 4);
+            assertEquals(expected, Launcher.getRegistry().getFindings(signature));
+        } finally {
+            System.clearProperty(DivisionByZeroCache.SYSTEM_PROPERTY);
+            System.clearProperty(FindingsWriter.SYSTEM_PROPERTY);
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+            if (line.contains(signature)) {
+                lines.add(line);
+            }
+        }
+        Files.delete(output);
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(",\"line\":6,\"expression\":\"j = n / x\"}"));
+        assertTrue(lines.get(1).endsWith(",\"line\":6,\"expression\":\"k = m / x\"}"));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Path output = Files.createTempFile("metrics", ".json");
+        System.setProperty(AnalysisMetrics.SYSTEM_PROPERTY, output.toString());
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis5");
+        } finally {
+            System.clearProperty(AnalysisMetrics.SYSTEM_PROPERTY);
+        }
+
+        String signature = "<inge2.dataflow.targets.ZeroAnalysis5: int func(int)>";
+        DivisionByZeroAnalysis zeroAnalysis = Launcher.getLastDivisionByZeroAnalysis();
+        MethodMetrics metrics = Launcher.getMetrics().get(signature);
+        assertEquals(zeroAnalysis.getFlowThroughCount(), metrics.getFlowThroughCount());
+        assertEquals(zeroAnalysis.getMergeCount(), metrics.getMergeCount());
+        assertTrue(metrics.getMaxStateSize() > 0);
+        assertTrue(metrics.getCfgNanos() > 0 && metrics.getFixpointNanos() > 0);
+
+        // Las métricas también se pueden leer por JMX.
+        Object analyzedMethods = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(AnalysisMetrics.OBJECT_NAME), "AnalyzedMethodCount");
+        assertEquals(Launcher.getMetrics().getAnalyzedMethodCount(), analyzedMethods);
+
+        String summary = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+        Files.delete(output);
+        assertTrue(summary.contains("{\"method\":\"" + signature + "\",\"cfgNanos\":"));
+    }
+
+    @Test
+    public void testResultCache() throws IOException {
+        Path cacheDir = Files.createTempDirectory("zero-analysis-cache");
+        String jarPath = System.getProperty("sootClassPath").split(File.pathSeparator)[0];
+        String signature = "<inge2.dataflow.targets.ZeroAnalysis8: int func(java.lang.String,long)>";
+        System.setProperty(DivisionByZeroCache.SYSTEM_PROPERTY, cacheDir.toString());
+        try {
+            // La segunda corrida sirve todos los resultados desde el cache.
+            Launcher.analyzeProcessDir(jarPath, 4);
+            List<DivisionByZeroFinding> analyzed = Launcher.getRegistry().getFindings(signature);
+            Launcher.analyzeProcessDir(jarPath, 4);
+            assertEquals(analyzed, Launcher.getRegistry().getFindings(signature));
+        } finally {
+            System.clearProperty(DivisionByZeroCache.SYSTEM_PROPERTY);
+        }
+
+        // analyzeProcessDir arma el Jimple con las mismas opciones que la sesión caliente.
+        String jimpleOptions = DivisionByZeroCache.jimpleOptionsOf(WarmSession.sootArgs(jarPath));
+        DivisionByZeroCache cache = new DivisionByZeroCache(cacheDir, ZeroAnalysisSolver.SOOT, CfgFlavour.EXCEPTIONAL,
+                jimpleOptions);
+        cache.scanClass(readClassFile("/inge2/dataflow/targets/ZeroAnalysis8.class"));
+        DivisionByZeroCache.Entry entry = cache.get(signature);
+        assertEquals(Collections.singletonList(new DivisionByZeroFinding(7, "j = y / x")), entry.getFindings());
+        ZeroAbstractState inState = entry.getINStateForLineNumber(8);
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("x"));
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, inState.getValue("j"));
+
+        // Otro tipo de grafo puede dar otros resultados, así que no usa los guardados.
+        DivisionByZeroCache briefCache = new DivisionByZeroCache(cacheDir, ZeroAnalysisSolver.SOOT, CfgFlavour.BRIEF,
+                jimpleOptions);
+        briefCache.scanClass(readClassFile("/inge2/dataflow/targets/ZeroAnalysis8.class"));
+        assertNull(briefCache.get(signature));
+
+        // Lo mismo con otro Jimple, por ejemplo sin agregar las expresiones como en las tareas de gradle.
+        String[] sootArgs = WarmSession.sootArgs(jarPath);
+        String[] withoutAggregation = Arrays.copyOf(sootArgs, sootArgs.length + 3);
+        withoutAggregation[sootArgs.length] = "-p";
+        withoutAggregation[sootArgs.length + 1] = "jb.a";
+        withoutAggregation[sootArgs.length + 2] = "off";
+        assertNotEquals(jimpleOptions, DivisionByZeroCache.jimpleOptionsOf(withoutAggregation));
+        DivisionByZeroCache otherJimpleCache = new DivisionByZeroCache(cacheDir, ZeroAnalysisSolver.SOOT,
+                CfgFlavour.EXCEPTIONAL, DivisionByZeroCache.jimpleOptionsOf(withoutAggregation));
+        otherJimpleCache.scanClass(readClassFile("/inge2/dataflow/targets/ZeroAnalysis8.class"));
+        assertNull(otherJimpleCache.get(signature));
+
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testMergeTable() {
+        // El merge es el supremo, así que no depende del orden: BOTTOM es neutro y NOT_ZERO con ZERO da MAYBE_ZERO.
+        ZeroAbstractValue bottom = ZeroAbstractValue.BOTTOM;
+        ZeroAbstractValue notZero = ZeroAbstractValue.NOT_ZERO;
+        ZeroAbstractValue zero = ZeroAbstractValue.ZERO;
+        ZeroAbstractValue maybeZero = ZeroAbstractValue.MAYBE_ZERO;
+        ZeroAbstractValue[] values = {bottom, notZero, zero, maybeZero};
+        ZeroAbstractValue[][] expected = {
+                //            BOTTOM     NOT_ZERO   ZERO       MAYBE_ZERO
+                /* BOTTOM */ {bottom,    notZero,   zero,      maybeZero},
+                /* NZ     */ {notZero,   notZero,   maybeZero, maybeZero},
+                /* ZERO   */ {zero,      maybeZero, zero,      maybeZero},
+                /* MZ     */ {maybeZero, maybeZero, maybeZero, maybeZero},
+        };
+        for (int i = 0; i < values.length; i++) {
+            for (int j = 0; j < values.length; j++) {
+                assertEquals(expected[i][j], values[i].merge(values[j]), values[i] + " merge " + values[j]);
+            }
+        }
+
+        // Si el merge se quedara con el primer valor, la división de notZeroFirst no se reportaría.
+        Launcher.analyzeClass("inge2.dataflow.targets.ZeroAnalysis11");
+        DivisionByZeroRegistry registry = Launcher.getRegistry();
+        assertEquals(Collections.singletonList(new DivisionByZeroFinding(11, "$stack3 = n / x")),
+                registry.getFindings("<inge2.dataflow.targets.ZeroAnalysis11: int notZeroFirst(int,int)>"));
+        assertEquals(Collections.singletonList(new DivisionByZeroFinding(21, "$stack3 = n / x")),
+                registry.getFindings("<inge2.dataflow.targets.ZeroAnalysis11: int zeroFirst(int,int)>"));
+    }
+
+    @Test
+    public void testStatesWithDifferentNumberings() {
+        // Las dos numeraciones dan índices distintos a x e y, así que los estados se comparan y se unen por nombre.
+        LocalNumbering numbering = new LocalNumbering();
+        numbering.getOrAssignIndex("x");
+        numbering.getOrAssignIndex("y");
+        LocalNumbering another = new LocalNumbering();
+        another.getOrAssignIndex("y");
+        another.getOrAssignIndex("x");
+
+        ZeroAbstractState state = new ZeroAbstractState(numbering);
+        state.setValue("x", ZeroAbstractValue.ZERO);
+        state.setValue("y", ZeroAbstractValue.NOT_ZERO);
+        ZeroAbstractState sameValues = new ZeroAbstractState(another);
+        sameValues.setValue("y", ZeroAbstractValue.NOT_ZERO);
+        sameValues.setValue("x", ZeroAbstractValue.ZERO);
+        assertEquals(state, sameValues);
+        assertEquals(state.hashCode(), sameValues.hashCode());
+
+        ZeroAbstractState other = new ZeroAbstractState(another);
+        other.setValue("x", ZeroAbstractValue.NOT_ZERO);
+        other.setValue("z", ZeroAbstractValue.ZERO);
+        assertTrue(state.joinWith(other));
+        assertFalse(state.joinWith(other));
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, state.getValue("x"));
+        assertEquals(ZeroAbstractValue.NOT_ZERO, state.getValue("y"));
+        assertEquals(ZeroAbstractValue.ZERO, state.getValue("z"));
+
+        ZeroAbstractState copy = new ZeroAbstractState(another);
+        copy.copyFrom(state);
+        assertEquals(state, copy);
+        assertEquals(state.getDefinedVariables(), copy.getDefinedVariables());
+    }
+
+    @Test
+    public void testInPlaceMerge() {
+        // Una subclase para poder llamar a merge, que es protected.
+        class MergingAnalysis extends DivisionByZeroAnalysis {
+            MergingAnalysis(UnitGraph graph) {
+                super(graph);
+            }
+
+            ZeroAbstractState state(ZeroAbstractValue x, ZeroAbstractValue y) {
+                ZeroAbstractState state = newInitialFlow();
+                state.setValue("x", x);
+                state.setValue("y", y);
+                return state;
+            }
+
+            void assertMerges(ZeroAbstractState input1, ZeroAbstractState input2, ZeroAbstractState output) {
+                ZeroAbstractState expected = input1.union(input2);
+                merge(input1, input2, output);
+                assertEquals(expected, output);
+            }
+        }
+
+        Body body = WarmSession.loadClass(System.getProperty("sootClassPath"), "inge2.dataflow.targets.ZeroAnalysis2").get(0);
+        MergingAnalysis analysis = new MergingAnalysis(new ExceptionalUnitGraph(body));
+
+        // La salida puede ser cualquiera de las entradas, o las dos.
+        ZeroAbstractState other = analysis.state(ZeroAbstractValue.NOT_ZERO, ZeroAbstractValue.ZERO);
+        ZeroAbstractState output = analysis.state(ZeroAbstractValue.ZERO, ZeroAbstractValue.ZERO);
+        analysis.assertMerges(output, other, output);
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, output.getValue("x"));
+        assertEquals(ZeroAbstractValue.ZERO, output.getValue("y"));
+
+        output = analysis.state(ZeroAbstractValue.ZERO, ZeroAbstractValue.NOT_ZERO);
+        analysis.assertMerges(other, output, output);
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, output.getValue("y"));
+
+        ZeroAbstractState unchanged = analysis.state(ZeroAbstractValue.ZERO, ZeroAbstractValue.NOT_ZERO);
+        analysis.assertMerges(unchanged, unchanged, unchanged);
+        assertFalse(unchanged.joinWith(unchanged));
+
+        long allocatedStates = analysis.getAllocatedStates();
+        analysis.assertMerges(other, other, analysis.state(ZeroAbstractValue.BOTTOM, ZeroAbstractValue.BOTTOM));
+        assertEquals(allocatedStates + 1, analysis.getAllocatedStates());
+    }
+
+    @Test
+    public void testSharedStateStorage() {
+        // Cada chunk de valores cubre 16 palabras de 32 variables (512 variables) y cada chunk de definidas 1024.
+        LocalNumbering numbering = new LocalNumbering();
+        for (int i = 0; i < 1100; i++) {
+            numbering.getOrAssignIndex("v" + i);
+        }
+
+        // El estado crece a medida que se escriben variables más altas.
+        ZeroAbstractState state = new ZeroAbstractState(numbering);
+        state.setValue("v0", ZeroAbstractValue.ZERO);
+        state.setValue("v511", ZeroAbstractValue.NOT_ZERO);
+        state.setValue("v512", ZeroAbstractValue.ZERO);
+        state.setValue("v1023", ZeroAbstractValue.MAYBE_ZERO);
+        state.setValue("v1099", ZeroAbstractValue.NOT_ZERO);
+        assertEquals(5, state.size());
+        assertEquals(ZeroAbstractValue.NOT_ZERO, state.getValue("v511"));
+        assertEquals(ZeroAbstractValue.ZERO, state.getValue("v512"));
+        assertEquals(ZeroAbstractValue.NOT_ZERO, state.getValue("v1099"));
+        assertFalse(state.hasValue("v1024"));
+
+        // La copia comparte los chunks hasta que alguno de los dos escribe; la escritura no se ve del otro lado.
+        ZeroAbstractState copy = new ZeroAbstractState(numbering);
+        copy.copyFrom(state);
+        assertEquals(state, copy);
+        copy.setValue("v512", ZeroAbstractValue.MAYBE_ZERO);
+        copy.setValue("v1024", ZeroAbstractValue.ZERO);
+        state.setValue("v511", ZeroAbstractValue.ZERO);
+        assertEquals(ZeroAbstractValue.ZERO, state.getValue("v512"));
+        assertFalse(state.hasValue("v1024"));
+        assertEquals(ZeroAbstractValue.NOT_ZERO, copy.getValue("v511"));
+        assertNotEquals(state, copy);
+
+        // Al volver a los mismos valores los estados son iguales, aunque ya no compartan los chunks.
+        copy.setValue("v511", ZeroAbstractValue.ZERO);
+        copy.setValue("v512", ZeroAbstractValue.ZERO);
+        state.setValue("v1024", ZeroAbstractValue.ZERO);
+        assertEquals(state, copy);
+        assertEquals(state.hashCode(), copy.hashCode());
+
+        // La unión de dos copias que divergieron tiene los valores de las dos.
+        ZeroAbstractState other = new ZeroAbstractState(numbering);
+        other.copyFrom(state);
+        other.setValue("v513", ZeroAbstractValue.NOT_ZERO);
+        state.setValue("v0", ZeroAbstractValue.NOT_ZERO);
+        assertTrue(state.joinWith(other));
+        assertEquals(ZeroAbstractValue.MAYBE_ZERO, state.getValue("v0"));
+        assertEquals(ZeroAbstractValue.NOT_ZERO, state.getValue("v513"));
+        assertEquals(ZeroAbstractValue.ZERO, other.getValue("v0"));
+    }
+
+    private static byte[] readClassFile(String resource) throws IOException {
+        try (InputStream in = TallerTest.class.getResourceAsStream(resource)) {
+            return StreamUtils.readAllBytes(in);
+        }
+    }
 }
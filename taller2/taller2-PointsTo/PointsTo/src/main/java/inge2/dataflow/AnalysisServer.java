@@ -0,0 +1,83 @@
+package inge2.dataflow;
+
+import inge2.dataflow.pointstoanalysis.PointsToAnalysis;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A local server that answers points-to queries from a {@link WarmSession}, so that only the first query pays for the
+ * Soot startup. It listens on localhost and reads one command per line:
+ * <ul>
+ *     <li><code>mayAlias &lt;class&gt; &lt;left&gt; &lt;right&gt;</code>: analyzes the entry point of the class and
+ *     answers <code>true</code> or <code>false</code>.</li>
+ *     <li><code>mayAlias &lt;class&gt; &lt;left&gt; &lt;field&gt; &lt;right&gt;</code>: the same, for
+ *     <code>left.field</code>.</li>
+ *     <li><code>quit</code>: closes the connection.</li>
+ * </ul>
+ * Errors are answered with a single <code>error &lt;message&gt;</code> line.
+ * The Soot class path is read from the system property "sootClassPath".
+ */
+public class AnalysisServer {
+    private final static Logger LOGGER = getLogger(AnalysisServer.class);
+
+    public static final int DEFAULT_PORT = 7071;
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        // Start the session before accepting connections, so the first query is fast too.
+        WarmSession.shared(System.getProperty("sootClassPath"));
+
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            LOGGER.info("Listening on {}:{}", server.getInetAddress().getHostAddress(), server.getLocalPort());
+            while (true) {
+                try (Socket client = server.accept()) {
+                    serve(client);
+                } catch (IOException e) {
+                    LOGGER.warn("Connection closed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void serve(Socket client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(client.getOutputStream(), true);
+
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] command = line.trim().split("\\s+");
+            if ("quit".equals(command[0])) {
+                return;
+            }
+
+            if ("mayAlias".equals(command[0]) && (command.length == 4 || command.length == 5)) {
+                try {
+                    Launcher.analyzeClass(command[1]);
+                    PointsToAnalysis analysis = Launcher.getLastPointsToAnalysis();
+                    if (analysis == null) {
+                        out.println("error no entryPoint method in " + command[1]);
+                    } else if (command.length == 4) {
+                        out.println(analysis.mayAlias(command[2], command[3]));
+                    } else {
+                        out.println(analysis.mayAlias(command[2], command[3], command[4]));
+                    }
+                } catch (RuntimeException e) {
+                    out.println("error " + e.getMessage());
+                }
+            } else {
+                out.println("error unknown command: " + line);
+            }
+        }
+    }
+}
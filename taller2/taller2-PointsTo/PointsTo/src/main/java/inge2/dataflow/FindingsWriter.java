@@ -0,0 +1,144 @@
+package inge2.dataflow;
+
+import inge2.dataflow.pointstoanalysis.Axis;
+import inge2.dataflow.pointstoanalysis.Node;
+import inge2.dataflow.pointstoanalysis.PointsToGraph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * This class streams points-to summaries as JSON Lines, one object per analyzed method with the nodes each variable
+ * may point to and the field edges between nodes:
+ * <pre>{"method":"&lt;A: void entryPoint()&gt;","variables":{"x":["5"]},"edges":[["5","f1","6"]]}</pre>
+ * The file is flushed after every summary, so it can be tailed during a long run. Soot may call this writer from
+ * several threads at once.
+ */
+public class FindingsWriter implements Closeable {
+
+    /**
+     * The system property with the path of the JSON Lines file. When it is set, no Jimple output is needed.
+     */
+    public static final String SYSTEM_PROPERTY = "findingsOutput";
+
+    private final Writer writer;
+
+    /**
+     * Creates a writer that writes into the given one, flushing it after each method.
+     * @param writer the destination of the lines, usually buffered.
+     */
+    public FindingsWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the file named by the {@link #SYSTEM_PROPERTY} system property, replacing its contents.
+     * @return the writer, or null if the property is not set.
+     */
+    public static FindingsWriter fromSystemProperty() {
+        String path = System.getProperty(SYSTEM_PROPERTY);
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return new FindingsWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + path, e);
+        }
+    }
+
+    /**
+     * Writes the summary of a points-to graph. Variables, nodes and edges are sorted by name.
+     * @param methodSignature the signature of the method.
+     * @param graph the points-to graph of the method.
+     */
+    public synchronized void write(String methodSignature, PointsToGraph graph) {
+        StringBuilder line = new StringBuilder("{\"method\":").append(quote(methodSignature)).append(",\"variables\":{");
+        String separator = "";
+        for (String variable : new TreeSet<>(graph.mapping.keySet())) {
+            line.append(separator).append(quote(variable)).append(":[");
+            String nodeSeparator = "";
+            for (String node : nodeNames(graph.getNodesForVariable(variable))) {
+                line.append(nodeSeparator).append(quote(node));
+                nodeSeparator = ",";
+            }
+            line.append(']');
+            separator = ",";
+        }
+
+        line.append("},\"edges\":[");
+        Set<String> edges = new TreeSet<>();
+        for (Axis axis : graph.axis) {
+            edges.add("[" + quote(axis.leftNode.name) + "," + quote(axis.fieldName) + "," + quote(axis.rightNode.name) + "]");
+        }
+        line.append(String.join(",", edges)).append("]}");
+
+        this.append(line.append('\n'));
+    }
+
+    /**
+     * Writes the given lines and flushes them.
+     */
+    private void append(CharSequence lines) {
+        try {
+            this.writer.append(lines);
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    private static Set<String> nodeNames(Set<Node> nodes) {
+        Set<String> names = new TreeSet<>();
+        for (Node node : nodes) {
+            names.add(node.name);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the given string as a JSON string literal.
+     */
+    static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
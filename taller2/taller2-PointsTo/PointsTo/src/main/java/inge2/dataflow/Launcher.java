@@ -1,10 +1,15 @@
 package inge2.dataflow;
 
 import inge2.dataflow.pointstoanalysis.PointsToAnalysis;
+import inge2.dataflow.util.soot.CfgFlavour;
+import inge2.dataflow.util.soot.UnitGraphProvider;
 import org.slf4j.Logger;
 import soot.*;
-import soot.toolkits.graph.ExceptionalUnitGraph;
+import soot.toolkits.graph.UnitGraph;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
 import java.util.Map;
 
 import static org.slf4j.LoggerFactory.getLogger;
@@ -13,42 +18,71 @@ import static org.slf4j.LoggerFactory.getLogger;
  * Launcher class for the points-to analysis.
  */
 public class Launcher {
+    private final static Logger LOGGER = getLogger(Launcher.class);
+
     public static final String POINTS_TO_SOOT_PHASE_NAME = "jtp.PointsToAnalysis";
 
     private static PointsToAnalysis lastPointsToAnalysis;
 
+    /**
+     * The JSON Lines output of the current run, or null if the "findingsOutput" system property is not set.
+     */
+    private static volatile FindingsWriter findingsWriter;
+
+    /**
+     * The cost of every method analyzed in the last run, also available through JMX.
+     */
+    private static final AnalysisMetrics METRICS = new AnalysisMetrics();
+
+    /**
+     * The control flow graphs of the last run, of the flavour chosen by the "cfg" system property. The graph of a body
+     * is released once the body is analyzed, and the rest when the run ends; only the counters outlive the run.
+     */
+    private static volatile UnitGraphProvider graphs = new UnitGraphProvider(CfgFlavour.EXCEPTIONAL);
+
     public static void main(String[] args) {
         // Reset soot in case we are calling it multiple times.
         soot.G.reset();
         setupPointsToAnalysis();
         // Run Soot.
-        soot.Main.main(args);
+        withRunOutputs(() -> soot.Main.main(args));
     }
 
     /**
-     * Runs the division by zero analysis on a given target class.
+     * Runs the points-to analysis on a given target class.
+     * The class is analyzed in the {@link WarmSession} shared by the JVM, so the Soot Scene is only built by the first
+     * call. No Jimple output is written; use {@link #main(String[])} for a regular Soot run.
      * The Soot class path is read from the system property "sootClassPath".
      * @param targetClass the target class to analyze.
      */
     public static void analyzeClass(String targetClass) {
-        String sootClassPath = System.getProperty("sootClassPath");
-
-        String[] sootArgs = {
-                targetClass,
-                "-cp", sootClassPath,
-                "-f", "J",
-                "-v",
-                "-print-tags",
-                "-p", POINTS_TO_SOOT_PHASE_NAME, "on",
-                "-p", "jb", "use-original-names:true",
-                "-p", "jb.ls", "off",
-                "-p", "jb.sils", "off",
-                "-p", "jb.ule", "off",
-                "-p", "jb.cp", "off",
-                "-keep-line-number",
-        };
-
-        Launcher.main(sootArgs);
+        // Forget the analysis of the previous class, in case this one has no entry point.
+        lastPointsToAnalysis = null;
+        withRunOutputs(() -> WarmSession.analyzeClass(System.getProperty("sootClassPath"), targetClass));
+    }
+
+    /**
+     * Runs an analysis after clearing the metrics, while the points-to summaries are streamed to the file named by the
+     * "findingsOutput" system property. At the end, the metrics are written to the file named by the "metricsOutput"
+     * system property.
+     */
+    private static void withRunOutputs(Runnable analysis) {
+        METRICS.clear();
+        METRICS.registerMBean();
+        graphs = new UnitGraphProvider(CfgFlavour.fromSystemProperty());
+        try (FindingsWriter writer = FindingsWriter.fromSystemProperty()) {
+            findingsWriter = writer;
+            analysis.run();
+            LOGGER.info("Built {} {} control flow graphs in {} ms, reused {}", graphs.getBuiltGraphs(),
+                    graphs.getFlavour().name().toLowerCase(Locale.ROOT), graphs.getBuildNanos() / 1_000_000,
+                    graphs.getReusedGraphs());
+            METRICS.writeToSystemProperty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            findingsWriter = null;
+            graphs.clear();
+        }
     }
 
     public static void setupPointsToAnalysis() {
@@ -73,8 +107,28 @@ public class Launcher {
                 }
 
                 // Run the PointsToAnalysis on the body.
-                // We use the ExceptionalUnitGraph to build a control flow graph that takes exceptions into account.
-                lastPointsToAnalysis = new PointsToAnalysis(new ExceptionalUnitGraph(body));
+                // By default we use the ExceptionalUnitGraph to build a control flow graph that takes exceptions into
+                // account; the "cfg" property chooses a cheaper one.
+                long allocatedBefore = AnalysisMetrics.currentThreadAllocatedBytes();
+                UnitGraph graph = graphs.getGraph(body);
+                long cfgNanos = graphs.getBuildNanos(body);
+                lastPointsToAnalysis = new PointsToAnalysis(graph);
+                long allocatedAfter = AnalysisMetrics.currentThreadAllocatedBytes();
+                // Ninguna otra fase usa el grafo de este cuerpo.
+                graphs.release(body);
+                // Contar los nodos recorre todos los grafos del análisis, así que solo se hace si se piden las métricas.
+                int maxNodeCount = AnalysisMetrics.isOutputRequested() ? lastPointsToAnalysis.getMaxNodeCount() : -1;
+                METRICS.record(new MethodMetrics(body.getMethod().getSignature(), cfgNanos,
+                        lastPointsToAnalysis.getFixpointNanos(), lastPointsToAnalysis.getFlowThroughCount(),
+                        lastPointsToAnalysis.getMergeCount(), maxNodeCount,
+                        lastPointsToAnalysis.getMaxEdgeCount(), lastPointsToAnalysis.getMaxMappingEntryCount(),
+                        lastPointsToAnalysis.getAllocatedGraphs(),
+                        allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore));
+
+                FindingsWriter writer = findingsWriter;
+                if (writer != null && lastPointsToAnalysis.getLastPointsToGraph() != null) {
+                    writer.write(body.getMethod().getSignature(), lastPointsToAnalysis.getLastPointsToGraph());
+                }
             }
         }));
     }
@@ -86,4 +140,20 @@ public class Launcher {
     public static PointsToAnalysis getLastPointsToAnalysis() {
         return lastPointsToAnalysis;
     }
+
+    /**
+     * Returns the control flow graphs built in the last run.
+     * @return the graph provider of the last run.
+     */
+    public static UnitGraphProvider getGraphs() {
+        return graphs;
+    }
+
+    /**
+     * Returns the cost of every method analyzed in the last run.
+     * @return the metrics of the last run.
+     */
+    public static AnalysisMetrics getMetrics() {
+        return METRICS;
+    }
 }
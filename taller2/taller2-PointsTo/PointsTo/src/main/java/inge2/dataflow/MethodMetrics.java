@@ -0,0 +1,98 @@
+package inge2.dataflow;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The cost of analyzing one method body: the time to build its control flow graph and to reach the fixpoint, the work
+ * done by the fixpoint, and the memory it allocated.
+ */
+public class MethodMetrics {
+    private final String method;
+    private final long cfgNanos;
+    private final long fixpointNanos;
+    private final long flowThroughCount;
+    private final long mergeCount;
+    private final int maxNodeCount;
+    private final int maxEdgeCount;
+    private final int maxMappingEntryCount;
+    private final long allocatedGraphs;
+    private final long allocatedBytes;
+
+    /**
+     * @param method the signature of the method.
+     * @param cfgNanos the time to build the control flow graph.
+     * @param fixpointNanos the time to run the analysis on the graph.
+     * @param flowThroughCount the amount of flow function evaluations.
+     * @param mergeCount the amount of merges.
+     * @param maxNodeCount the largest amount of nodes in a points-to graph, or -1 if it was not computed because the
+     *                     summary is not written.
+     * @param maxEdgeCount the largest amount of edges in a points-to graph.
+     * @param maxMappingEntryCount the largest amount of (variable, node) pairs in the mapping of a points-to graph.
+     * @param allocatedGraphs the amount of points-to graphs allocated by the analysis.
+     * @param allocatedBytes the bytes allocated by the thread while building the graph and running the analysis, or -1
+     *                       if the JVM does not measure them.
+     */
+    @ConstructorProperties({"method", "cfgNanos", "fixpointNanos", "flowThroughCount", "mergeCount", "maxNodeCount",
+            "maxEdgeCount", "maxMappingEntryCount", "allocatedGraphs", "allocatedBytes"})
+    public MethodMetrics(String method, long cfgNanos, long fixpointNanos, long flowThroughCount, long mergeCount,
+                         int maxNodeCount, int maxEdgeCount, int maxMappingEntryCount, long allocatedGraphs,
+                         long allocatedBytes) {
+        this.method = method;
+        this.cfgNanos = cfgNanos;
+        this.fixpointNanos = fixpointNanos;
+        this.flowThroughCount = flowThroughCount;
+        this.mergeCount = mergeCount;
+        this.maxNodeCount = maxNodeCount;
+        this.maxEdgeCount = maxEdgeCount;
+        this.maxMappingEntryCount = maxMappingEntryCount;
+        this.allocatedGraphs = allocatedGraphs;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getCfgNanos() {
+        return cfgNanos;
+    }
+
+    public long getFixpointNanos() {
+        return fixpointNanos;
+    }
+
+    public long getFlowThroughCount() {
+        return flowThroughCount;
+    }
+
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    public int getMaxNodeCount() {
+        return maxNodeCount;
+    }
+
+    public int getMaxEdgeCount() {
+        return maxEdgeCount;
+    }
+
+    public int getMaxMappingEntryCount() {
+        return maxMappingEntryCount;
+    }
+
+    public long getAllocatedGraphs() {
+        return allocatedGraphs;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the time to build the graph and run the analysis.
+     */
+    public long getTotalNanos() {
+        return cfgNanos + fixpointNanos;
+    }
+}
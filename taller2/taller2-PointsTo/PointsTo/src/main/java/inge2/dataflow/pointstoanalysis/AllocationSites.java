@@ -0,0 +1,70 @@
+package inge2.dataflow.pointstoanalysis;
+
+import soot.Body;
+import soot.Unit;
+import soot.jimple.AnyNewExpr;
+import soot.jimple.AssignStmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro de los sitios de alocación de un cuerpo: hay un único {@link Node} por cada sentencia "new", creado una
+ * sola vez por análisis y numerado con un id denso (0, 1, 2...) en el orden del cuerpo.
+ *
+ * El nombre del nodo es la línea de la sentencia. Si hay varias sentencias "new" en la misma línea, la segunda se
+ * llama "línea#2", la tercera "línea#3", etc., así que no se confunden en un único nodo.
+ */
+public final class AllocationSites {
+
+    private final Map<Unit, Node> nodesByUnit = new IdentityHashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+
+    public AllocationSites(Body body) {
+        Map<Integer, Integer> allocationsByLine = new HashMap<>();
+        for (Unit unit : body.getUnits()) {
+            if (unit instanceof AssignStmt && ((AssignStmt) unit).getRightOp() instanceof AnyNewExpr) {
+                int line = unit.getJavaSourceStartLineNumber();
+                int allocations = allocationsByLine.merge(line, 1, Integer::sum);
+                String name = allocations == 1 ? String.valueOf(line) : line + "#" + allocations;
+                Node node = new Node(nodes.size(), name, this);
+                nodes.add(node);
+                nodesByUnit.put(unit, node);
+            }
+        }
+    }
+
+    /**
+     * Devuelve el nodo de la sentencia "new" <code>unit</code>.
+     * @param unit la sentencia.
+     * @return el nodo, o null si la sentencia no es un "new" del cuerpo.
+     */
+    public Node getNode(Unit unit) {
+        return nodesByUnit.get(unit);
+    }
+
+    /**
+     * Devuelve el nodo con el id <code>id</code>.
+     */
+    public Node getNode(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * Devuelve la cantidad de sitios de alocación, que es también el primer id libre.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Devuelve todos los nodos, ordenados por id.
+     */
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+}
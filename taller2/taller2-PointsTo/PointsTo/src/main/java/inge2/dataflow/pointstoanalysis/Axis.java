@@ -1,14 +1,25 @@
 package inge2.dataflow.pointstoanalysis;
 
 public class Axis {
-    public Node leftNode;
-    public String fieldName;
-    public Node rightNode;
+    public final Node leftNode;
+    public final String fieldName;
+    public final Node rightNode;
+
+    /**
+     * El hash se calcula una sola vez, ya que los ejes no cambian.
+     */
+    private final int hash;
 
     public Axis(Node leftNode, String fieldName, Node rightNode) {
         this.leftNode = leftNode;
         this.fieldName = fieldName;
         this.rightNode = rightNode;
+
+        int result = 0;
+        result = 31*result + (leftNode !=null ? leftNode.hashCode() : 0);
+        result = 31*result + (fieldName !=null ? fieldName.hashCode() : 0);
+        result = 31*result + (rightNode !=null ? rightNode.hashCode() : 0);
+        this.hash = result;
     }
 
     @Override
@@ -22,17 +33,13 @@ public class Axis {
         if (other == this) return true;
         if (!(other instanceof Axis))return false;
         Axis otherMyClass = (Axis)other;
-        return 	this.leftNode.equals(otherMyClass.leftNode) &&
+        return 	this.hash == otherMyClass.hash &&
+                this.leftNode.equals(otherMyClass.leftNode) &&
                 this.fieldName.equals(otherMyClass.fieldName) &&
                 this.rightNode.equals(otherMyClass.rightNode);
     }
 
     public int hashCode() {
-        int result = 0;
-        result = 31*result + (leftNode !=null ? leftNode.hashCode() : 0);
-        result = 31*result + (fieldName !=null ? fieldName.hashCode() : 0);
-        result = 31*result + (rightNode !=null ? rightNode.hashCode() : 0);
-
-        return result;
+        return hash;
     }
 }
@@ -1,9 +1,38 @@
 package inge2.dataflow.pointstoanalysis;
 
 public class Node {
-    public String name;
+    /**
+     * Id de los nodos que no pertenecen a ningún {@link AllocationSites}.
+     */
+    public static final int NO_ID = -1;
+
+    public final String name;
+
+    /**
+     * El id del nodo dentro de su {@link AllocationSites}, o {@link #NO_ID}.
+     */
+    public final int id;
+
+    /**
+     * El {@link AllocationSites} que creó el nodo, o null si no pertenece a ninguno. Permite a {@link NodeSet} volver
+     * de un id al nodo.
+     */
+    final AllocationSites sites;
+
+    /**
+     * El hash se calcula una sola vez, ya que los nodos no cambian.
+     */
+    private final int hash;
+
     public Node(String name) {
+        this(NO_ID, name, null);
+    }
+
+    Node(int id, String name, AllocationSites sites) {
+        this.id = id;
         this.name = name;
+        this.sites = sites;
+        this.hash = 31 * id + (name != null ? name.hashCode() : 0);
     }
 
     @Override
@@ -17,12 +46,12 @@ public class Node {
         if (other == this) return true;
         if (!(other instanceof Node))return false;
         Node otherMyClass = (Node)other;
-        return this.name.equals(otherMyClass.name);
+        // Los nodos de un mismo AllocationSites son únicos, así que casi siempre alcanza con comparar los ids.
+        return this.id == otherMyClass.id && this.sites == otherMyClass.sites && this.hash == otherMyClass.hash
+                && this.name.equals(otherMyClass.name);
     }
 
     public int hashCode() {
-        int result = 0;
-        result = 31*result + (name !=null ? name.hashCode() : 0);
-        return result;
+        return hash;
     }
 }
@@ -0,0 +1,363 @@
+package inge2.dataflow.pointstoanalysis;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Conjunto de nodos guardado como un bitset de los ids densos de un {@link AllocationSites}: el nodo con id i es el bit
+ * i. Así la unión y la intersección de dos conjuntos del mismo análisis se hacen de a 64 nodos por operación, sin
+ * recorrer los nodos ni crear objetos.
+ *
+ * Los nodos sin id (creados con {@link Node#Node(String)}) o de otro {@link AllocationSites} se guardan aparte, en un
+ * conjunto común, así que el NodeSet acepta cualquier nodo.
+ *
+ * Un conjunto congelado con {@link #freeze()} ya no se puede modificar, así que varios {@link PointsToGraph}s lo pueden
+ * compartir sin copiarlo.
+ */
+public final class NodeSet extends AbstractSet<Node> {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    /**
+     * El {@link AllocationSites} de los nodos del bitset, o null si todavía no se agregó ninguno.
+     */
+    private AllocationSites sites;
+
+    private long[] words = NO_WORDS;
+
+    /**
+     * La cantidad de bits en 1 de {@link #words}.
+     */
+    private int bitCount = 0;
+
+    /**
+     * Los nodos que no entran en el bitset, o null si no hay ninguno.
+     */
+    private Set<Node> others;
+
+    private boolean frozen = false;
+
+    /**
+     * La huella del conjunto, calculada al congelarlo. Ver {@link #fingerprint()}.
+     */
+    private long fingerprint;
+
+    public NodeSet() {
+    }
+
+    public NodeSet(Collection<? extends Node> nodes) {
+        addAll(nodes);
+    }
+
+    /**
+     * Devuelve true si <code>left</code> y <code>right</code> tienen algún nodo en común. Si los dos son NodeSets del
+     * mismo análisis, se compara de a palabras; si no, se recorre el más chico. En ningún caso se crea un conjunto.
+     */
+    public static boolean intersects(Set<Node> left, Set<Node> right) {
+        if (left instanceof NodeSet && right instanceof NodeSet) {
+            return ((NodeSet) left).intersects((NodeSet) right);
+        }
+        Set<Node> smaller = left.size() <= right.size() ? left : right;
+        Set<Node> larger = smaller == left ? right : left;
+        for (Node node : smaller) {
+            if (larger.contains(node)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve true si este conjunto y <code>other</code> tienen algún nodo en común.
+     */
+    public boolean intersects(NodeSet other) {
+        if (sites != null && sites == other.sites) {
+            int common = Math.min(words.length, other.words.length);
+            for (int i = 0; i < common; i++) {
+                if ((words[i] & other.words[i]) != 0) return true;
+            }
+        }
+        // los nodos de otro análisis no pueden estar en el bitset del otro conjunto si sus sites son distintos,
+        // así que solo falta mirar los nodos guardados aparte de cada lado
+        if (others != null) {
+            for (Node node : others) {
+                if (other.contains(node)) return true;
+            }
+        }
+        if (other.others != null) {
+            for (Node node : other.others) {
+                if (contains(node)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Congela el conjunto: desde ahora cualquier modificación tira {@link UnsupportedOperationException}.
+     * @return este conjunto.
+     */
+    public NodeSet freeze() {
+        if (!frozen) {
+            fingerprint = computeFingerprint();
+            frozen = true;
+        }
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Devuelve la huella del conjunto: la suma de una mezcla del hash de cada nodo. No depende del orden en que se
+     * agregaron los nodos, así que dos conjuntos iguales tienen la misma huella, y dos distintos casi nunca. Si el
+     * conjunto está congelado no se recorre.
+     */
+    long fingerprint() {
+        return frozen ? fingerprint : computeFingerprint();
+    }
+
+    /**
+     * Mezcla los bits de <code>value</code> (el paso final de SplitMix64), para que las sumas de huellas no choquen
+     * con facilidad.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private long computeFingerprint() {
+        long sum = 0;
+        for (Node node : this) {
+            sum += mix(node.hashCode());
+        }
+        return sum;
+    }
+
+    @Override
+    public int size() {
+        return bitCount + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof Node)) return false;
+        Node node = (Node) o;
+        if (inBitset(node)) {
+            int word = node.id >>> 6;
+            return word < words.length && (words[word] & (1L << node.id)) != 0;
+        }
+        return others != null && others.contains(node);
+    }
+
+    @Override
+    public boolean add(Node node) {
+        checkNotFrozen();
+        if (node.id != Node.NO_ID && node.sites != null && (sites == null || sites == node.sites)) {
+            sites = node.sites;
+            int word = node.id >>> 6;
+            ensureWords(word + 1);
+            long bit = 1L << node.id;
+            if ((words[word] & bit) != 0) return false;
+            words[word] |= bit;
+            bitCount++;
+            return true;
+        }
+        if (others == null) others = new HashSet<>();
+        return others.add(node);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        checkNotFrozen();
+        if (!(o instanceof Node)) return false;
+        Node node = (Node) o;
+        if (inBitset(node)) {
+            int word = node.id >>> 6;
+            long bit = 1L << node.id;
+            if (word >= words.length || (words[word] & bit) == 0) return false;
+            words[word] &= ~bit;
+            bitCount--;
+            return true;
+        }
+        return others != null && others.remove(node);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Node> nodes) {
+        checkNotFrozen();
+        if (!(nodes instanceof NodeSet)) {
+            return super.addAll(nodes);
+        }
+
+        NodeSet other = (NodeSet) nodes;
+        boolean changed = false;
+        if (other.bitCount > 0) {
+            if (sites == null) sites = other.sites;
+            if (sites == other.sites) {
+                // unión de a palabras, contando los bits nuevos
+                ensureWords(other.words.length);
+                for (int i = 0; i < other.words.length; i++) {
+                    long merged = words[i] | other.words[i];
+                    if (merged != words[i]) {
+                        bitCount += Long.bitCount(merged) - Long.bitCount(words[i]);
+                        words[i] = merged;
+                        changed = true;
+                    }
+                }
+            } else {
+                for (Node node : other.bitsetNodes()) {
+                    changed |= add(node);
+                }
+            }
+        }
+        if (other.others != null) {
+            for (Node node : other.others) {
+                changed |= add(node);
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        checkNotFrozen();
+        Arrays.fill(words, 0L);
+        sites = null;
+        bitCount = 0;
+        others = null;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> nodes) {
+        if (!(nodes instanceof NodeSet)) {
+            return super.containsAll(nodes);
+        }
+
+        NodeSet other = (NodeSet) nodes;
+        if (other.bitCount > 0) {
+            if (sites != other.sites) return super.containsAll(nodes);
+            // todos los bits del otro tienen que estar en este
+            for (int i = 0; i < other.words.length; i++) {
+                long word = i < words.length ? words[i] : 0L;
+                if ((other.words[i] & ~word) != 0) return false;
+            }
+        }
+        return other.others == null || super.containsAll(other.others);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof NodeSet)) return super.equals(o);
+        NodeSet other = (NodeSet) o;
+        if (size() != other.size()) return false;
+        if (frozen && other.frozen && fingerprint != other.fingerprint) return false;
+        if (sites != other.sites && (bitCount > 0 || other.bitCount > 0)) return super.equals(o);
+        // el arreglo más largo solo puede tener ceros de más
+        int common = Math.min(words.length, other.words.length);
+        for (int i = 0; i < common; i++) {
+            if (words[i] != other.words[i]) return false;
+        }
+        Set<Node> theseOthers = others == null ? Collections.emptySet() : others;
+        Set<Node> otherOthers = other.others == null ? Collections.emptySet() : other.others;
+        return theseOthers.equals(otherOthers);
+    }
+
+    @Override
+    public int hashCode() {
+        // la suma de los hashes de los nodos, como pide Set
+        return super.hashCode();
+    }
+
+    @Override
+    public Iterator<Node> iterator() {
+        Iterator<Node> bitset = bitsetNodes().iterator();
+        Iterator<Node> rest = others == null ? Collections.emptyIterator() : others.iterator();
+        return new Iterator<Node>() {
+            private Iterator<Node> last;
+
+            @Override
+            public boolean hasNext() {
+                return bitset.hasNext() || rest.hasNext();
+            }
+
+            @Override
+            public Node next() {
+                last = bitset.hasNext() ? bitset : rest;
+                return last.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) throw new IllegalStateException();
+                checkNotFrozen();
+                last.remove();
+                last = null;
+            }
+        };
+    }
+
+    /**
+     * Los nodos del bitset, en orden de id.
+     */
+    private Iterable<Node> bitsetNodes() {
+        return () -> new Iterator<Node>() {
+            private int word = 0;
+            private long remaining = words.length == 0 ? 0 : words[0];
+            private int lastId = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (remaining == 0) {
+                    if (++word >= words.length) return false;
+                    remaining = words[word];
+                }
+                return true;
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                lastId = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                // apagamos el bit más bajo
+                remaining &= remaining - 1;
+                return sites.getNode(lastId);
+            }
+
+            @Override
+            public void remove() {
+                if (lastId < 0) throw new IllegalStateException();
+                words[lastId >>> 6] &= ~(1L << lastId);
+                bitCount--;
+                lastId = -1;
+            }
+        };
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("The set is frozen");
+        }
+    }
+
+    private boolean inBitset(Node node) {
+        return node.id != Node.NO_ID && node.sites != null && node.sites == sites;
+    }
+
+    private void ensureWords(int length) {
+        if (length > words.length) {
+            words = Arrays.copyOf(words, Math.max(length, words.length * 2));
+        }
+    }
+}
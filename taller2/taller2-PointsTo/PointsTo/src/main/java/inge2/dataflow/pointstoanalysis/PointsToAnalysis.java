@@ -4,22 +4,120 @@ import soot.Unit;
 import soot.toolkits.graph.UnitGraph;
 import soot.toolkits.scalar.ForwardFlowAnalysis;
 
-import java.util.HashSet;
 import java.util.Set;
 
 public class PointsToAnalysis extends ForwardFlowAnalysis<Unit, PointsToGraph> {
 
     private PointsToGraph lastPointsToGraph;
 
+    /**
+     * Los nodos de las sentencias "new" del cuerpo, creados una sola vez.
+     */
+    private final AllocationSites allocationSites;
+
+    /**
+     * La numeración de las variables locales del cuerpo, compartida por todos los grafos del análisis.
+     */
+    private final Variables variables;
+
+    private long flowThroughCount = 0;
+    private long mergeCount = 0;
+    private long allocatedGraphs = 0;
+
+    /**
+     * The largest amount of edges and mapping entries in the OUT graph of a unit, updated by each flow function
+     * evaluation. The largest amount of nodes is computed on demand, see {@link #getMaxNodeCount()}.
+     */
+    private int maxNodeCount = -1;
+    private int maxEdgeCount = 0;
+    private int maxMappingEntryCount = 0;
+
+    /**
+     * The time spent reaching the fixpoint.
+     */
+    private final long fixpointNanos;
+
     public PointsToAnalysis(UnitGraph graph) {
         super(graph);
+        this.allocationSites = new AllocationSites(graph.getBody());
+        this.variables = new Variables(graph.getBody());
+        long start = System.nanoTime();
         doAnalysis();
+        this.fixpointNanos = System.nanoTime() - start;
+
+        // el último grafo es el de la salida del método, la unión de los OUT de las últimas unidades:
+        // con ciclos, la última unidad evaluada no tiene por qué ser una de ellas
+        if (!graph.getTails().isEmpty()) {
+            PointsToGraph exit = new PointsToGraph(variables);
+            for (Unit tail : graph.getTails()) {
+                exit.union(getFlowAfter(tail));
+            }
+            this.lastPointsToGraph = exit;
+        }
     }
 
     public PointsToGraph getLastPointsToGraph() {
         return lastPointsToGraph;
     }
 
+    /**
+     * Devuelve los nodos de las sentencias "new" del cuerpo analizado.
+     */
+    public AllocationSites getAllocationSites() {
+        return allocationSites;
+    }
+
+    /**
+     * Devuelve la cantidad de veces que se evaluó la función de transferencia.
+     */
+    public long getFlowThroughCount() {
+        return flowThroughCount;
+    }
+
+    /**
+     * Devuelve la cantidad de veces que se unieron dos grafos.
+     */
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * Devuelve la cantidad de grafos creados por el análisis.
+     */
+    public long getAllocatedGraphs() {
+        return allocatedGraphs;
+    }
+
+    /**
+     * Devuelve el tiempo que tardó el análisis en llegar al punto fijo, en nanosegundos.
+     */
+    public long getFixpointNanos() {
+        return fixpointNanos;
+    }
+
+    /**
+     * Devuelve la mayor cantidad de nodos del OUT de una unidad. Contar los nodos de un grafo lo recorre entero, así
+     * que se calcula recién la primera vez que se pide.
+     */
+    public int getMaxNodeCount() {
+        if (maxNodeCount < 0) {
+            int max = 0;
+            for (PointsToGraph out : unitToAfterFlow.values()) {
+                max = Math.max(max, out.getNodeCount());
+            }
+            maxNodeCount = max;
+        }
+        return maxNodeCount;
+    }
+
+    public int getMaxEdgeCount() {
+        return maxEdgeCount;
+    }
+
+    public int getMaxMappingEntryCount() {
+        return maxMappingEntryCount;
+    }
+
     /**
      * This method is called for each unit in the control flow graph.
      * @param in the input flow
@@ -28,17 +126,22 @@ public class PointsToAnalysis extends ForwardFlowAnalysis<Unit, PointsToGraph> {
      */
     @Override
     protected void flowThrough(PointsToGraph in, Unit unit, PointsToGraph out) {
+        flowThroughCount++;
         out.copy(in);
 
-        PointsToVisitor visitor = new PointsToVisitor(out);
+        PointsToVisitor visitor = new PointsToVisitor(out, allocationSites);
         unit.apply(visitor);
 
+        // los dos tamaños se mantienen en el grafo, así que actualizar los máximos no lo recorre
+        maxEdgeCount = Math.max(maxEdgeCount, out.getEdgeCount());
+        maxMappingEntryCount = Math.max(maxMappingEntryCount, out.getMappingEntryCount());
         this.lastPointsToGraph = out;
     }
 
     @Override
     protected PointsToGraph newInitialFlow() {
-        return new PointsToGraph();
+        allocatedGraphs++;
+        return new PointsToGraph(variables);
     }
 
     /**
@@ -49,6 +152,7 @@ public class PointsToAnalysis extends ForwardFlowAnalysis<Unit, PointsToGraph> {
      */
     @Override
     protected void merge(PointsToGraph input1, PointsToGraph input2, PointsToGraph output) {
+        mergeCount++;
         output.copy(input1);
         output.union(input2);
     }
@@ -66,15 +170,12 @@ public class PointsToAnalysis extends ForwardFlowAnalysis<Unit, PointsToGraph> {
     public boolean mayAlias(String leftVariableName, String rightVariableName) {
 
         // para que haya un alias, las variables deben apuntar a algún mismo nodo
-        // Para eso, creamos una copia de ambos conjuntos
-        // nos quedamos con la intersección y devolvemos si no es vacía
-
-        Set<Node> leftVariableNodes = new HashSet<>(getLastPointsToGraph().getNodesForVariable(leftVariableName));
-        Set<Node> rightVariableNodes = new HashSet<>(getLastPointsToGraph().getNodesForVariable(rightVariableName));
+        // alcanza con saber si los conjuntos se intersecan, sin armar la intersección
 
-        leftVariableNodes.retainAll(rightVariableNodes);
+        Set<Node> leftVariableNodes = getLastPointsToGraph().getNodesForVariable(leftVariableName);
+        Set<Node> rightVariableNodes = getLastPointsToGraph().getNodesForVariable(rightVariableName);
 
-        return !leftVariableNodes.isEmpty();
+        return NodeSet.intersects(leftVariableNodes, rightVariableNodes);
     }
 
     /**
@@ -94,16 +195,6 @@ public class PointsToAnalysis extends ForwardFlowAnalysis<Unit, PointsToGraph> {
         Set<Node> leftVariableNodes = getLastPointsToGraph().getNodesForVariable(leftVariableName);
         Set<Node> rightVariableNodes = getLastPointsToGraph().getNodesForVariable(rightVariableName);
 
-
-        for (Node leftNode: leftVariableNodes){
-            Set<Node> reachableNodes = getLastPointsToGraph().getReachableNodesByField(leftNode, fieldName);
-            for (Node reachableNode: reachableNodes) {
-                for (Node rightNode : rightVariableNodes) {
-                    if (reachableNode.equals(rightNode)) return true;
-                }
-            }
-        }
-
-        return false;
+        return getLastPointsToGraph().reachesByField(leftVariableNodes, fieldName, rightVariableNodes);
     }
 }
@@ -1,11 +1,24 @@
 package inge2.dataflow.pointstoanalysis;
 
-import soot.Unit;
-import soot.jimple.AssignStmt;
-import soot.tagkit.LineNumberTag;
-
 import java.util.*;
 
+/**
+ * Grafo de points-to con copy-on-write: {@link #copy(PointsToGraph)} no copia nada, sino que los dos grafos pasan a
+ * compartir la tabla de variables y el índice de ejes, y cada uno copia la parte que modifica recién cuando la modifica.
+ *
+ * Para que compartir sea siempre seguro:
+ * <ul>
+ *     <li>los conjuntos de nodos guardados en el grafo están congelados ({@link NodeSet#freeze()}), así que nunca se
+ *     modifican: cambiar el conjunto de una variable o de un eje es reemplazarlo por otro;</li>
+ *     <li>la tabla y el mapa del índice se marcan como compartidos, y se copian antes de la primera modificación;</li>
+ *     <li>los ejes de cada nodo ({@link Fields}) tienen un dueño, y un grafo solo modifica en el lugar los que son suyos.
+ *     Al compartir, el grafo cambia de identidad de dueño, así que deja de ser dueño de los que ya tenía.</li>
+ * </ul>
+ *
+ * La igualdad es estructural, para que el análisis detecte cuándo un grafo dejó de cambiar. El grafo mantiene una
+ * huella del mapping y otra de los ejes, que se actualizan con cada modificación, así que dos grafos distintos casi
+ * siempre se distinguen sin recorrerlos.
+ */
 public class PointsToGraph {
 
     /**
@@ -21,63 +34,194 @@ public class PointsToGraph {
      *
      * Un eje (n1, f, n2) indica que el los objetos representados por el nodo n1 tienen un campo f que apunta al/los
      * objetos representados por n2.
+     *
+     * Es una vista de {@link #adjacency}: al recorrerla se arman las triplas, y agregar un eje lo agrega al índice.
+     */
+    public final Set<Axis> axis = new AxisView();
+
+    /**
+     * Índice de los ejes: para cada nodo n1 y campo f, los nodos n2 de los ejes (n1, f, n2).
+     * Así, los nodos alcanzables por un campo se obtienen sin recorrer todos los ejes.
+     */
+    private Map<Node, Fields> adjacency = new HashMap<>();
+
+    /**
+     * False si {@link #adjacency} puede estar compartido con otro grafo.
+     */
+    private boolean ownsAdjacency = true;
+
+    /**
+     * La cantidad de ejes del índice.
      */
-    public Set<Axis> axis;
+    private int edgeCount = 0;
 
     /**
      * Mapping de variables locales a nodos.
      * Representa el conjunto de objetos a los que puede apuntar una variable local.
+     *
+     * Es una vista por nombre de {@link #table}, para los tests y las consultas.
      */
-    public Map<String, Set<Node>> mapping;
+    public final Map<String, Set<Node>> mapping = new MappingView();
+
+    /**
+     * La numeración de las variables, compartida por todos los grafos de un análisis.
+     */
+    private final Variables variables;
+
+    /**
+     * El conjunto de nodos de cada variable, indexado por su número en {@link #variables}, o null si la variable no
+     * está en el mapping. Los conjuntos son {@link NodeSet}s, así la unión de dos mappings se hace de a palabras.
+     */
+    private NodeSet[] table;
+
+    /**
+     * False si {@link #table} puede estar compartida con otro grafo.
+     */
+    private boolean ownsTable = true;
+
+    /**
+     * La cantidad de variables del mapping, es decir de posiciones no nulas de {@link #table}.
+     */
+    private int mappedVariables = 0;
+
+    /**
+     * La cantidad de pares (variable, nodo) del mapping, es decir la suma de los tamaños de los conjuntos de
+     * {@link #table}.
+     */
+    private int mappingEntryCount = 0;
+
+    /**
+     * Las huellas del mapping y de los ejes: la suma de la huella de cada variable y de cada nodo con ejes, ver
+     * {@link #variableFingerprint(int, NodeSet)} y {@link #nodeFingerprint(Node, Fields)}.
+     */
+    private long mappingFingerprint = 0;
+    private long edgeFingerprint = 0;
+
+    /**
+     * La identidad de dueño del grafo, ver {@link Fields}. Cambia cada vez que el grafo comparte su índice.
+     */
+    private Object owner = new Object();
 
     public PointsToGraph(){
-        nodes = new HashSet<>();
-        axis = new HashSet<>();
-        mapping = new HashMap<>();
+        this(new Variables());
+    }
+
+    public PointsToGraph(Variables variables) {
+        this.nodes = new HashSet<>();
+        this.variables = variables;
+        this.table = new NodeSet[variables.size()];
+    }
+
+    /**
+     * Devuelve la numeración de las variables del grafo.
+     */
+    public Variables getVariables() {
+        return variables;
     }
 
     public void clear() {
         nodes.clear();
-        axis.clear();
-        mapping.clear();
+        adjacency = new HashMap<>();
+        ownsAdjacency = true;
+        edgeCount = 0;
+        edgeFingerprint = 0;
+        table = new NodeSet[variables.size()];
+        ownsTable = true;
+        mappedVariables = 0;
+        mappingEntryCount = 0;
+        mappingFingerprint = 0;
     }
 
     /**
-     * Devuelve el nombre del nodo correspondiente a la sentencia <code>stmt</code>.
-     * @param stmt
-     * @return
+     * Devuelve la cantidad de nodos del grafo, contando los que aparecen en el mapping o en algún eje.
+     */
+    public int getNodeCount() {
+        Set<Node> allNodes = new NodeSet(nodes);
+        for (NodeSet variableNodes : table) {
+            if (variableNodes != null) allNodes.addAll(variableNodes);
+        }
+        for (Map.Entry<Node, Fields> node : adjacency.entrySet()) {
+            allNodes.add(node.getKey());
+            for (NodeSet targets : node.getValue().targets.values()) {
+                allNodes.addAll(targets);
+            }
+        }
+        return allNodes.size();
+    }
+
+    /**
+     * Devuelve la cantidad de ejes del grafo.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Devuelve la cantidad de pares (variable, nodo) del mapping.
      */
-    public Node getNodeName(AssignStmt stmt) {
-        LineNumberTag lineNumberTag = (LineNumberTag) stmt.getTag("LineNumberTag");
-        return new Node(String.valueOf(lineNumberTag.getLineNumber()));
+    public int getMappingEntryCount() {
+        return mappingEntryCount;
     }
 
     /**
      * Devuelve el conjunto de nodos a los que apunta la variable <code>variableName</code>.
+     * El conjunto puede estar compartido con otros grafos, así que no se puede modificar.
      * @param variableName
      * @return
      */
     public Set<Node> getNodesForVariable(String variableName) {
 
-        // dentro del mapping hay un conjunto de nodos para cada variable
-        // obtenemos el set correspondiente a la variable
-        // si no existe la clave, devolvemos un conjunto vacío
+        // buscamos el número de la variable y devolvemos su conjunto de la tabla
+
+        return getNodesForVariable(variables.indexOf(variableName));
+    }
+
+    /**
+     * Devuelve el conjunto de nodos a los que apunta la variable con el índice <code>variable</code> de
+     * {@link #getVariables()}, o un conjunto vacío si no está en el mapping.
+     */
+    public Set<Node> getNodesForVariable(int variable) {
+
+        // si la variable no tiene conjunto, devolvemos un conjunto vacío
 
-        if(!mapping.containsKey(variableName)) return new HashSet<Node>();
-        return mapping.get(variableName);
+        Set<Node> variableNodes = variable >= 0 && variable < table.length ? table[variable] : null;
+        return variableNodes != null ? variableNodes : new NodeSet();
     }
 
     /**
      * Setea el conjunto de nodos a los que apunta la variable <code>variableName</code>.
+     * El grafo se queda con una copia de <code>nodes</code>, salvo que ya esté congelado.
      * @param variableName
      * @param nodes
      */
     public void setNodesForVariable(String variableName, Set<Node> nodes) {
 
-        // dentro del mapping hay un conjunto de nodos para cada variable
-        // copiamos el set pasado por parámetro en la clave correpondiende del map
+        // numeramos la variable si todavía no tiene número
 
-        mapping.put(variableName, nodes);
+        setNodesForVariable(variables.add(variableName), nodes);
+    }
+
+    /**
+     * Setea el conjunto de nodos a los que apunta la variable con el índice <code>variable</code> de
+     * {@link #getVariables()}.
+     */
+    public void setNodesForVariable(int variable, Set<Node> nodes) {
+
+        // guardamos una copia congelada del set pasado por parámetro en la posición de la variable,
+        // así el que llama no puede cambiar el grafo modificando su set
+
+        ownTable(Math.max(variables.size(), variable + 1));
+        NodeSet previous = table[variable];
+        NodeSet current = frozen(nodes);
+        if (previous == null) {
+            mappedVariables++;
+        } else {
+            mappingEntryCount -= previous.size();
+            mappingFingerprint -= variableFingerprint(variable, previous);
+        }
+        mappingEntryCount += current.size();
+        mappingFingerprint += variableFingerprint(variable, current);
+        table[variable] = current;
     }
 
     /**
@@ -87,13 +231,30 @@ public class PointsToGraph {
      * @param rightNode
      */
     public void addEdge(Node leftNode, String fieldName, Node rightNode) {
+        addEdges(leftNode, fieldName, Collections.singleton(rightNode));
+    }
+
+    /**
+     * Agrega los ejes (leftNode, fieldName, n2) para cada nodo n2 de <code>rightNodes</code>.
+     * @param leftNode
+     * @param fieldName
+     * @param rightNodes
+     */
+    public void addEdges(Node leftNode, String fieldName, Set<Node> rightNodes) {
 
-        // Axis es un conjunto de ejes donde un eje es la tripla (leftNode, fieldName, rightNode)
-        // agregamos al conjunto de ejes, la tripla (leftNode, fieldName, rightNode)
+        // Los ejes se guardan indexados por nodo izquierdo y campo
+        // como el conjunto de (leftNode, fieldName) puede estar compartido, lo reemplazamos por su unión con rightNodes
 
-        Axis newAxis = new Axis(leftNode,fieldName, rightNode);
+        NodeSet targets = targetsOf(leftNode, fieldName);
+        if (rightNodes.isEmpty() || targets != null && targets.containsAll(rightNodes)) return;
 
-        axis.add(newAxis);
+        NodeSet merged = targets == null ? new NodeSet() : new NodeSet(targets);
+        merged.addAll(rightNodes);
+        edgeCount += merged.size() - (targets == null ? 0 : targets.size());
+        long before = nodeFingerprint(leftNode, adjacency.get(leftNode));
+        Fields fields = ownFields(leftNode);
+        fields.put(fieldName, merged.freeze());
+        edgeFingerprint += nodeFingerprint(leftNode, fields) - before;
     }
 
     /**
@@ -104,28 +265,37 @@ public class PointsToGraph {
      */
     public Set<Node> getReachableNodesByField(Node node, String fieldName) {
 
-        // recorremos todos los ejes que el leftNode sea el nodo izquierdo pasado por parámetro
-        // y que el fieldName sea el campo pasado por parámetro
-        // nos quedamos con todos los ejes que cumplan esto
+        // buscamos en el índice los nodos de los ejes que salen de node por el campo fieldName
 
-        Set<Node> res = new HashSet<>();
-
-        for (Axis axis : axis) {
-            if (axis.leftNode.equals(node) && axis.fieldName.equals(fieldName)) {
-                res.add(axis.rightNode);
-            }
-        }
-
-        return res;
+        Set<Node> targets = targetsOf(node, fieldName);
+        return targets == null ? new NodeSet() : new NodeSet(targets);
     }
 
     /**
      * Copia de un grafo (modifica el this).
+     * Los dos grafos comparten todo hasta que alguno se modifica, así que copiar no depende del tamaño del grafo.
      * @param in
      */
     public void copy(PointsToGraph in) {
-        this.clear();
-        this.union(in);
+        if (in == this) return;
+        if (in.variables != this.variables) {
+            // sin la misma numeración no se puede compartir la tabla
+            this.clear();
+            this.union(in);
+            return;
+        }
+
+        nodes.clear();
+        nodes.addAll(in.nodes);
+        table = in.table;
+        mappedVariables = in.mappedVariables;
+        mappingEntryCount = in.mappingEntryCount;
+        mappingFingerprint = in.mappingFingerprint;
+        adjacency = in.adjacency;
+        edgeCount = in.edgeCount;
+        edgeFingerprint = in.edgeFingerprint;
+        this.share();
+        in.share();
     }
 
     /**
@@ -142,21 +312,393 @@ public class PointsToGraph {
         // Hacemos union de conjuntos de variables ya que se van a usar todas las variables
         // Para todas las variables que tengan ejes, unimos el conjunto de ejes
         // si coinciden dos variables, hacemos union de sus conjuntos
+        // lo que sea igual en los dos grafos (por estar compartido) no se recorre
+
+        if (in == this) return;
 
         nodes.addAll(in.nodes);
 
-        for (String inVariable : in.mapping.keySet()) {
+        // si los dos grafos son del mismo análisis las variables tienen los mismos números,
+        // si no, pasamos por los nombres
+
+        if (in.table != this.table) {
+            for (int inVariable = 0; inVariable < in.table.length; inVariable++) {
+                NodeSet inSetNodes = in.table[inVariable];
+                if (inSetNodes == null) continue;
+
+                int variable = in.variables == this.variables
+                        ? inVariable
+                        : this.variables.add(in.variables.nameOf(inVariable));
+                NodeSet currentSetNodes = variable < table.length ? table[variable] : null;
+                if (currentSetNodes == null) {
+                    this.setNodesForVariable(variable, inSetNodes);
+                } else if (currentSetNodes != inSetNodes && !currentSetNodes.containsAll(inSetNodes)) {
+                    NodeSet merged = new NodeSet(currentSetNodes);
+                    merged.addAll(inSetNodes);
+                    this.setNodesForVariable(variable, merged.freeze());
+                }
+
+            }
+        }
+
+        // los ejes de un nodo que solo está en in se comparten, así que in deja de ser su dueño
+
+        if (in.adjacency == this.adjacency) return;
+        boolean sharedFields = false;
+        for (Map.Entry<Node, Fields> inNode : in.adjacency.entrySet()) {
+            Fields fields = this.adjacency.get(inNode.getKey());
+            if (fields == null) {
+                ownAdjacency();
+                this.adjacency.put(inNode.getKey(), inNode.getValue());
+                edgeCount += inNode.getValue().edgeCount();
+                edgeFingerprint += nodeFingerprint(inNode.getKey(), inNode.getValue());
+                sharedFields = true;
+            } else if (fields != inNode.getValue()) {
+                for (Map.Entry<String, NodeSet> inField : inNode.getValue().targets.entrySet()) {
+                    addEdges(inNode.getKey(), inField.getKey(), inField.getValue());
+                }
+            }
+        }
+        if (sharedFields) {
+            in.owner = new Object();
+        }
+
+    }
+
+    /**
+     * Devuelve true si desde algún nodo de <code>sources</code> se llega por el campo <code>fieldName</code> a algún
+     * nodo de <code>nodes</code>. A diferencia de {@link #getReachableNodesByField(Node, String)}, no copia nada.
+     */
+    public boolean reachesByField(Set<Node> sources, String fieldName, Set<Node> nodes) {
+        for (Node source : sources) {
+            Set<Node> targets = targetsOf(source, fieldName);
+            if (targets != null && NodeSet.intersects(targets, nodes)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve los nodos de los ejes (node, fieldName, n2), o null si no hay ninguno.
+     */
+    private NodeSet targetsOf(Node node, String fieldName) {
+        Fields fields = adjacency.get(node);
+        return fields == null ? null : fields.targets.get(fieldName);
+    }
+
+    /**
+     * Marca la tabla y el índice como compartidos, y cambia la identidad de dueño del grafo.
+     */
+    private void share() {
+        ownsTable = false;
+        ownsAdjacency = false;
+        owner = new Object();
+    }
+
+    /**
+     * Se asegura de que la tabla sea propia y tenga al menos <code>length</code> posiciones, copiándola si hace falta.
+     */
+    private void ownTable(int length) {
+        if (!ownsTable || length > table.length) {
+            table = Arrays.copyOf(table, Math.max(length, table.length));
+            ownsTable = true;
+        }
+    }
+
+    private void ownAdjacency() {
+        if (!ownsAdjacency) {
+            adjacency = new HashMap<>(adjacency);
+            ownsAdjacency = true;
+        }
+    }
+
+    /**
+     * Devuelve los ejes de <code>node</code> listos para modificar, copiándolos si el grafo no es su dueño.
+     */
+    private Fields ownFields(Node node) {
+        ownAdjacency();
+        Fields fields = adjacency.get(node);
+        if (fields == null || fields.owner != owner) {
+            fields = new Fields(owner, fields);
+            adjacency.put(node, fields);
+        }
+        return fields;
+    }
+
+    /**
+     * La huella del par (variable, nodes) del mapping. Usa el nombre de la variable, no su número, así que grafos con
+     * distintas numeraciones tienen la misma huella si tienen el mismo mapping.
+     */
+    private long variableFingerprint(int variable, NodeSet nodes) {
+        return NodeSet.mix(variables.nameOf(variable).hashCode() * 0x9e3779b97f4a7c15L + nodes.fingerprint());
+    }
+
+    /**
+     * La huella de los ejes que salen de <code>node</code>, o 0 si no hay ninguno.
+     */
+    private static long nodeFingerprint(Node node, Fields fields) {
+        return fields == null ? 0 : NodeSet.mix(node.hashCode() * 0x9e3779b97f4a7c15L + fields.fingerprint);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof PointsToGraph)) return false;
+        PointsToGraph other = (PointsToGraph) o;
+
+        // las huellas y los tamaños distinguen casi todos los grafos distintos sin recorrerlos,
+        // y lo que los dos grafos comparten no hace falta compararlo
+
+        if (mappingFingerprint != other.mappingFingerprint || edgeFingerprint != other.edgeFingerprint
+                || mappedVariables != other.mappedVariables || edgeCount != other.edgeCount) {
+            return false;
+        }
+        return nodes.equals(other.nodes) && sameMapping(other) && sameEdges(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mappingFingerprint * 31 + edgeFingerprint);
+    }
+
+    private boolean sameMapping(PointsToGraph other) {
+        if (table == other.table) return true;
+        if (variables != other.variables) return mapping.equals(other.mapping);
+        for (int variable = 0; variable < Math.max(table.length, other.table.length); variable++) {
+            NodeSet nodes = variable < table.length ? table[variable] : null;
+            NodeSet otherNodes = variable < other.table.length ? other.table[variable] : null;
+            if (nodes != otherNodes && (nodes == null || !nodes.equals(otherNodes))) return false;
+        }
+        return true;
+    }
+
+    private boolean sameEdges(PointsToGraph other) {
+        if (adjacency == other.adjacency) return true;
+        if (adjacency.size() != other.adjacency.size()) return false;
+        for (Map.Entry<Node, Fields> node : adjacency.entrySet()) {
+            Fields otherFields = other.adjacency.get(node.getKey());
+            if (otherFields == null) return false;
+            if (otherFields != node.getValue() && !otherFields.targets.equals(node.getValue().targets)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve <code>nodes</code> si ya es un NodeSet congelado, o una copia congelada si no.
+     */
+    private static NodeSet frozen(Set<Node> nodes) {
+        if (nodes instanceof NodeSet && ((NodeSet) nodes).isFrozen()) {
+            return (NodeSet) nodes;
+        }
+        return new NodeSet(nodes).freeze();
+    }
+
+    /**
+     * Los ejes que salen de un nodo, por campo. Solo el grafo con la identidad de dueño {@link #owner} los modifica en
+     * el lugar; los demás grafos que los comparten los copian antes.
+     */
+    private static final class Fields {
+        final Object owner;
+        final Map<String, NodeSet> targets;
+
+        /**
+         * La suma de la huella de cada par (campo, nodos) de {@link #targets}.
+         */
+        long fingerprint;
+
+        /**
+         * Crea los ejes de <code>owner</code>, con una copia de los de <code>source</code> si no es null.
+         */
+        Fields(Object owner, Fields source) {
+            this.owner = owner;
+            this.targets = source == null ? new HashMap<>() : new HashMap<>(source.targets);
+            this.fingerprint = source == null ? 0 : source.fingerprint;
+        }
 
-            Set<Node> currentSetNodes = this.getNodesForVariable(inVariable);
-            Set<Node> inSetNodes = in.getNodesForVariable(inVariable);
-            currentSetNodes.addAll(inSetNodes);
-            this.setNodesForVariable(inVariable, currentSetNodes);
+        void put(String fieldName, NodeSet nodes) {
+            NodeSet previous = targets.put(fieldName, nodes);
+            if (previous != null) {
+                fingerprint -= fieldFingerprint(fieldName, previous);
+            }
+            fingerprint += fieldFingerprint(fieldName, nodes);
+        }
 
+        private static long fieldFingerprint(String fieldName, NodeSet nodes) {
+            return NodeSet.mix(fieldName.hashCode() * 0x9e3779b97f4a7c15L + nodes.fingerprint());
         }
 
-        for (Axis axis : in.axis) {
-            this.addEdge(axis.leftNode, axis.fieldName, axis.rightNode);
+        int edgeCount() {
+            int edges = 0;
+            for (NodeSet nodes : targets.values()) {
+                edges += nodes.size();
+            }
+            return edges;
         }
+    }
+
 
+    /**
+     * La tabla de variables vista como un Map por nombre de variable.
+     */
+    private final class MappingView extends AbstractMap<String, Set<Node>> {
+
+        @Override
+        public int size() {
+            return mappedVariables;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Node> get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int variable = variables.indexOf((String) key);
+            return variable >= 0 && variable < table.length ? table[variable] : null;
+        }
+
+        @Override
+        public Set<Node> put(String key, Set<Node> value) {
+            Set<Node> previous = get(key);
+            setNodesForVariable(key, value);
+            return previous;
+        }
+
+        @Override
+        public Set<Node> remove(Object key) {
+            Set<Node> previous = get(key);
+            if (previous != null) {
+                int variable = variables.indexOf((String) key);
+                ownTable(table.length);
+                mappingEntryCount -= table[variable].size();
+                mappingFingerprint -= variableFingerprint(variable, table[variable]);
+                table[variable] = null;
+                mappedVariables--;
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            table = new NodeSet[variables.size()];
+            ownsTable = true;
+            mappedVariables = 0;
+            mappingEntryCount = 0;
+            mappingFingerprint = 0;
+        }
+
+        @Override
+        public Set<Entry<String, Set<Node>>> entrySet() {
+            return new AbstractSet<Entry<String, Set<Node>>>() {
+                @Override
+                public int size() {
+                    return mappedVariables;
+                }
+
+                @Override
+                public Iterator<Entry<String, Set<Node>>> iterator() {
+                    return new Iterator<Entry<String, Set<Node>>>() {
+                        private int next = advance(0);
+
+                        private int advance(int from) {
+                            while (from < table.length && table[from] == null) from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < table.length;
+                        }
+
+                        @Override
+                        public Entry<String, Set<Node>> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int variable = next;
+                            next = advance(next + 1);
+                            return new SimpleImmutableEntry<>(variables.nameOf(variable), table[variable]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Los ejes de {@link #adjacency} vistos como un conjunto de triplas.
+     */
+    private final class AxisView extends AbstractSet<Axis> {
+
+        @Override
+        public int size() {
+            return edgeCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Axis)) {
+                return false;
+            }
+            Axis edge = (Axis) o;
+            Set<Node> targets = targetsOf(edge.leftNode, edge.fieldName);
+            return targets != null && targets.contains(edge.rightNode);
+        }
+
+        @Override
+        public boolean add(Axis edge) {
+            int before = edgeCount;
+            addEdge(edge.leftNode, edge.fieldName, edge.rightNode);
+            return edgeCount != before;
+        }
+
+        @Override
+        public void clear() {
+            adjacency = new HashMap<>();
+            ownsAdjacency = true;
+            edgeCount = 0;
+            edgeFingerprint = 0;
+        }
+
+        @Override
+        public Iterator<Axis> iterator() {
+            // Recorre el índice nodo por nodo y campo por campo, armando cada tripla recién cuando se pide.
+            Iterator<Map.Entry<Node, Fields>> nodes = adjacency.entrySet().iterator();
+            return new Iterator<Axis>() {
+                private Node leftNode;
+                private Iterator<Map.Entry<String, NodeSet>> fields = Collections.emptyIterator();
+                private String fieldName;
+                private Iterator<Node> targets = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!targets.hasNext()) {
+                        while (!fields.hasNext()) {
+                            if (!nodes.hasNext()) {
+                                return false;
+                            }
+                            Map.Entry<Node, Fields> node = nodes.next();
+                            leftNode = node.getKey();
+                            fields = node.getValue().targets.entrySet().iterator();
+                        }
+                        Map.Entry<String, NodeSet> field = fields.next();
+                        fieldName = field.getKey();
+                        targets = field.getValue().iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public Axis next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return new Axis(leftNode, fieldName, targets.next());
+                }
+            };
+        }
     }
 }
@@ -1,18 +1,25 @@
 package inge2.dataflow.pointstoanalysis;
 
+import soot.Local;
+import soot.Value;
 import soot.jimple.*;
 import soot.jimple.internal.JInstanceFieldRef;
 import soot.jimple.internal.JimpleLocal;
 
-import java.util.HashSet;
 import java.util.Set;
 
 public class PointsToVisitor extends AbstractStmtSwitch<Void> {
 
     private final PointsToGraph pointsToGraph;
 
-    public PointsToVisitor(PointsToGraph pointsToGraph) {
+    /**
+     * Los nodos de las sentencias "new" del cuerpo analizado.
+     */
+    private final AllocationSites allocationSites;
+
+    public PointsToVisitor(PointsToGraph pointsToGraph, AllocationSites allocationSites) {
         this.pointsToGraph = pointsToGraph;
+        this.allocationSites = allocationSites;
     }
 
     @Override
@@ -37,66 +44,72 @@ public class PointsToVisitor extends AbstractStmtSwitch<Void> {
     }
 
     private void processNewObject(AssignStmt stmt) {
-        String leftVariableName = stmt.getLeftOp().toString();
-        Node nodeName = pointsToGraph.getNodeName(stmt);
+        int leftVariable = variableOf(stmt.getLeftOp());
+        Node nodeName = allocationSites.getNode(stmt);
 
         // al asignar a una variable un nuevo objeto, le asignamos el conjunto de nodos
         // que solo contiene a un nuevo nodo, que representa nuevo objeto creado en esa línea de código
 
-        Set<Node> newSet = new HashSet<>();
+        NodeSet newSet = new NodeSet();
         newSet.add(nodeName);
 
-        pointsToGraph.setNodesForVariable(leftVariableName, newSet);
+        // congelado, el grafo se lo queda sin copiarlo
+        pointsToGraph.setNodesForVariable(leftVariable, newSet.freeze());
     }
 
     private void processCopy(AssignStmt stmt) {
-        String leftVariableName = stmt.getLeftOp().toString();
-        String rightVariableName = stmt.getRightOp().toString();
+        int leftVariable = variableOf(stmt.getLeftOp());
+        int rightVariable = variableOf(stmt.getRightOp());
 
         // buscamos el conjunto de nodos de la variable derecha y se lo asignamos a la izquierda
 
-        Set<Node> rightVariableNodes = pointsToGraph.getNodesForVariable(rightVariableName);
-        pointsToGraph.setNodesForVariable(leftVariableName, rightVariableNodes);
+        Set<Node> rightVariableNodes = pointsToGraph.getNodesForVariable(rightVariable);
+        pointsToGraph.setNodesForVariable(leftVariable, rightVariableNodes);
 
     }
 
     private void processStore(AssignStmt stmt) { // x.f = y
         JInstanceFieldRef leftFieldRef = (JInstanceFieldRef) stmt.getLeftOp();
-        String leftVariableName = leftFieldRef.getBase().toString();
+        int leftVariable = variableOf(leftFieldRef.getBase());
         String fieldName = leftFieldRef.getField().getName();
-        String rightVariableName = stmt.getRightOp().toString();
+        int rightVariable = variableOf(stmt.getRightOp());
 
         // Buscamos todos los nodos a los que apunta cada variable.
-        // Para cada nodo de la variable izquierda, agregamos el eje con el campo fieldName
-        // para todos los nodos de la variable derecha
+        // Para cada nodo de la variable izquierda, agregamos los ejes con el campo fieldName
+        // a todos los nodos de la variable derecha
 
-        Set<Node> rightVariableNodes = pointsToGraph.getNodesForVariable(rightVariableName);
-        Set<Node> leftVariableNodes = pointsToGraph.getNodesForVariable(leftVariableName);
+        Set<Node> rightVariableNodes = pointsToGraph.getNodesForVariable(rightVariable);
+        Set<Node> leftVariableNodes = pointsToGraph.getNodesForVariable(leftVariable);
 
         for (Node leftNode : leftVariableNodes) {
-            for (Node rightNode : rightVariableNodes) {
-                pointsToGraph.addEdge(leftNode, fieldName, rightNode);
-            }
+            pointsToGraph.addEdges(leftNode, fieldName, rightVariableNodes);
         }
     }
 
     private void processLoad(AssignStmt stmt) { // x = y.f
-        String leftVariableName = stmt.getLeftOp().toString();
+        int leftVariable = variableOf(stmt.getLeftOp());
         JInstanceFieldRef rightFieldRef = (JInstanceFieldRef) stmt.getRightOp();
-        String rightVariableName = rightFieldRef.getBase().toString();
+        int rightVariable = variableOf(rightFieldRef.getBase());
         String fieldName = rightFieldRef.getField().getName();
 
         // buscamos todos los nodos que pueden ser accedidos mediante el campo en la variable derecha
         // y se lo asignamos a la variable de la izquierda
 
-        Set<Node> rightVariableNodes = pointsToGraph.getNodesForVariable(rightVariableName);
-        Set<Node> allReachableNodesForFieldName = new HashSet<>();
+        Set<Node> rightVariableNodes = pointsToGraph.getNodesForVariable(rightVariable);
+        NodeSet allReachableNodesForFieldName = new NodeSet();
 
         for (Node rightNode : rightVariableNodes) {
             Set<Node> reachableRightNodes = pointsToGraph.getReachableNodesByField(rightNode, fieldName);
             allReachableNodesForFieldName.addAll(reachableRightNodes);
         }
 
-        pointsToGraph.setNodesForVariable(leftVariableName, allReachableNodesForFieldName);
+        pointsToGraph.setNodesForVariable(leftVariable, allReachableNodesForFieldName.freeze());
+    }
+
+    /**
+     * Devuelve el número de la variable local <code>value</code> en el grafo, sin armar su nombre.
+     */
+    private int variableOf(Value value) {
+        return pointsToGraph.getVariables().indexOf((Local) value);
     }
 }
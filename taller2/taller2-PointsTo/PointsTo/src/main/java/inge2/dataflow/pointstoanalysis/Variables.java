@@ -0,0 +1,83 @@
+package inge2.dataflow.pointstoanalysis;
+
+import soot.Body;
+import soot.Local;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numeración de las variables locales de un cuerpo: cada variable tiene un índice denso (0, 1, 2...), así los
+ * {@link PointsToGraph} del análisis guardan el conjunto de nodos de cada variable en un arreglo, y las funciones de
+ * transferencia no arman ni hashean el nombre de la variable en cada pasada.
+ *
+ * Los nombres se siguen pudiendo usar: una variable que no es del cuerpo recibe el siguiente índice la primera vez que
+ * se la nombra. Dos locales con el mismo nombre comparten el índice, como antes compartían la clave del mapping.
+ */
+public final class Variables {
+
+    private final Map<Local, Integer> indexByLocal = new IdentityHashMap<>();
+    private final Map<String, Integer> indexByName = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Crea una numeración vacía, que se completa a medida que se nombran las variables.
+     */
+    public Variables() {
+    }
+
+    /**
+     * Numera las variables locales de <code>body</code> en el orden del cuerpo.
+     */
+    public Variables(Body body) {
+        for (Local local : body.getLocals()) {
+            indexByLocal.put(local, add(local.getName()));
+        }
+    }
+
+    /**
+     * Devuelve el índice de la variable <code>local</code>, numerándola si no es del cuerpo.
+     */
+    public int indexOf(Local local) {
+        Integer index = indexByLocal.get(local);
+        if (index == null) {
+            index = add(local.getName());
+            indexByLocal.put(local, index);
+        }
+        return index;
+    }
+
+    /**
+     * Devuelve el índice de la variable <code>name</code>, o -1 si todavía no tiene uno.
+     */
+    public int indexOf(String name) {
+        return indexByName.getOrDefault(name, -1);
+    }
+
+    /**
+     * Devuelve el índice de la variable <code>name</code>, numerándola si todavía no tiene uno.
+     */
+    public int add(String name) {
+        return indexByName.computeIfAbsent(name, variable -> {
+            names.add(variable);
+            return names.size() - 1;
+        });
+    }
+
+    /**
+     * Devuelve el nombre de la variable con el índice <code>index</code>.
+     */
+    public String nameOf(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * Devuelve la cantidad de variables numeradas, que es también el primer índice libre.
+     */
+    public int size() {
+        return names.size();
+    }
+}
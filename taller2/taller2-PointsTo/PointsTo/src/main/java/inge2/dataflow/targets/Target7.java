@@ -0,0 +1,10 @@
+package inge2.dataflow.targets;
+
+public class Target7 {
+    private Target7 f1;
+
+    public void entryPoint() {
+        Target7 x = new Target7(); Target7 y = new Target7();
+        x.f1 = y;
+    }
+}
@@ -0,0 +1,19 @@
+package inge2.dataflow.targets;
+
+public class Target8 {
+    private Target8 next;
+
+    public void entryPoint(int n) {
+        Target8 head = new Target8();
+        Target8 last = head;
+        Target8 node;
+        while (n > 0) {
+            node = new Target8();
+            last.next = node;
+            last = node;
+            n--;
+        }
+        Target8 cursor = head.next;
+        Target8 other = new Target8();
+    }
+}
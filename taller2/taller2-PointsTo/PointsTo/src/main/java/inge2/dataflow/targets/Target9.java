@@ -0,0 +1,29 @@
+package inge2.dataflow.targets;
+
+public class Target9 {
+    private Target9 left;
+    private Target9 right;
+
+    public void entryPoint(int n) {
+        Target9 root = new Target9();
+        Target9 cursor = root;
+        Target9 child;
+        int i;
+        int j;
+        for (i = 0; i < n; i++) {
+            for (j = 0; j < n; j++) {
+                child = new Target9();
+                cursor.left = child;
+                if (j % 2 == 0) {
+                    cursor = cursor.left;
+                } else {
+                    cursor.right = cursor;
+                }
+            }
+            while (cursor.right != null) {
+                cursor = cursor.right;
+            }
+        }
+        Target9 found = root.left;
+    }
+}
@@ -0,0 +1,128 @@
+package inge2.dataflow.scalability;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes the sources of the synthetic targets of the scalability gate, one class per size:
+ * <code>inge2.dataflow.targets.scalability.ScalabilityTarget&lt;size&gt;</code>. Each class has {@link #FIELDS}
+ * fields of its own type and one method for each shape that used to make the analysis blow up:
+ * <ul>
+ *     <li><code>allocationChain</code>: <code>size</code> allocations, each stored in a field of the previous one,
+ *     with a load every few statements.</li>
+ *     <li><code>nestedLoops</code>: <code>size / 25</code> nested loops, each allocating, storing and moving a cursor
+ *     along the fields in an if/else.</li>
+ *     <li><code>wideSwitch</code>: a switch with <code>size</code> cases that allocate and store into the same object.</li>
+ * </ul>
+ * The generated sources are compiled by the build, with debug information so the original local names are kept.
+ *
+ * Usage: <code>CorpusGenerator &lt;output dir&gt; &lt;size&gt;...</code>
+ */
+public class CorpusGenerator {
+
+    public static final String PACKAGE = "inge2.dataflow.targets.scalability";
+
+    private static final int FIELDS = 4;
+
+    /**
+     * One statement out of this many in <code>allocationChain</code> is a load.
+     */
+    private static final int LOAD_EVERY = 5;
+
+    /**
+     * The amount of statements each loop adds to <code>nestedLoops</code>.
+     */
+    private static final int STATEMENTS_PER_LOOP = 25;
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Paths.get(args[0]);
+        Path packageDir = outputDir.resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(packageDir);
+
+        for (int i = 1; i < args.length; i++) {
+            int size = Integer.parseInt(args[i]);
+            Path source = packageDir.resolve(className(size) + ".java");
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(source, StandardCharsets.UTF_8))) {
+                writeClass(out, size);
+            }
+        }
+    }
+
+    public static String className(int size) {
+        return "ScalabilityTarget" + size;
+    }
+
+    private static void writeClass(PrintWriter out, int size) {
+        String type = className(size);
+        out.println("package " + PACKAGE + ";");
+        out.println();
+        out.println("// Generated by " + CorpusGenerator.class.getName() + ", do not edit.");
+        out.println("public class " + type + " {");
+        for (int i = 0; i < FIELDS; i++) {
+            out.println("    private " + type + " f" + i + ";");
+        }
+        out.println();
+        writeAllocationChain(out, type, size);
+        writeNestedLoops(out, type, Math.max(1, size / STATEMENTS_PER_LOOP));
+        writeWideSwitch(out, type, size);
+        out.println("}");
+    }
+
+    private static void writeAllocationChain(PrintWriter out, String type, int size) {
+        out.println("    public void allocationChain() {");
+        out.println("        " + type + " a0 = new " + type + "();");
+        for (int i = 1; i < size; i++) {
+            out.println("        " + type + " a" + i + " = new " + type + "();");
+            out.println("        a" + (i - 1) + ".f" + (i % FIELDS) + " = a" + i + ";");
+            if (i % LOAD_EVERY == 0) {
+                // Lee un campo de un objeto anterior de la cadena.
+                out.println("        " + type + " l" + i + " = a" + (i / 2) + ".f" + ((i / 2 + 1) % FIELDS) + ";");
+            }
+        }
+        out.println("    }");
+        out.println();
+    }
+
+    private static void writeNestedLoops(PrintWriter out, String type, int depth) {
+        out.println("    public void nestedLoops(int n) {");
+        out.println("        " + type + " cursor = new " + type + "();");
+        StringBuilder indent = new StringBuilder("        ");
+        for (int i = 0; i < depth; i++) {
+            out.println(indent + "for (int i" + i + " = 0; i" + i + " < n; i" + i + "++) {");
+            indent.append("    ");
+            out.println(indent + type + " x" + i + " = new " + type + "();");
+            out.println(indent + "cursor.f" + (i % FIELDS) + " = x" + i + ";");
+            out.println(indent + "if (n == i" + i + ") {");
+            out.println(indent + "    cursor = x" + i + ";");
+            out.println(indent + "} else {");
+            out.println(indent + "    cursor = cursor.f" + ((i + 1) % FIELDS) + ";");
+            out.println(indent + "}");
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            indent.setLength(indent.length() - 4);
+            out.println(indent + "}");
+        }
+        out.println("    }");
+        out.println();
+    }
+
+    private static void writeWideSwitch(PrintWriter out, String type, int cases) {
+        out.println("    public void wideSwitch(int k) {");
+        out.println("        " + type + " a = new " + type + "();");
+        out.println("        " + type + " x = a;");
+        out.println("        switch (k) {");
+        for (int i = 0; i < cases; i++) {
+            out.println("            case " + i + ":");
+            out.println("                x = new " + type + "();");
+            out.println("                a.f" + (i % FIELDS) + " = x;");
+            out.println("                break;");
+        }
+        out.println("        }");
+        out.println("        " + type + " y = a.f0;");
+        out.println("    }");
+    }
+}
@@ -0,0 +1,246 @@
+package inge2.dataflow.scalability;
+
+import inge2.dataflow.pointstoanalysis.PointsToAnalysis;
+import soot.Body;
+import soot.G;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+import soot.toolkits.graph.ExceptionalUnitGraph;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the points-to analysis on the methods of the targets written by
+ * {@link CorpusGenerator}, and compares the time and the peak heap of each run against a stored baseline.
+ * It exits with status 1 if any of them is worse than the baseline by more than the tolerance.
+ *
+ * The time of a run is the best of {@link #REPETITIONS} runs and includes building the {@link ExceptionalUnitGraph}.
+ * The peak heap is the peak of the heap pools during the run, minus the heap used before it.
+ *
+ * Usage: <code>ScalabilityGate &lt;baseline csv&gt; &lt;results csv&gt; &lt;size&gt;...</code>
+ * The Soot class path, which must contain the compiled targets, is read from the system property "sootClassPath".
+ * The system property "scalability.tolerance" is the allowed relative growth (0.5 by default), and if
+ * "scalability.updateBaseline" is true the results are written as the new baseline instead of being compared.
+ * A run that takes longer than "scalability.timeoutSeconds" (30 by default) is stopped and recorded as not finished,
+ * with -1 as its time and heap.
+ */
+public class ScalabilityGate {
+
+    private static final String HEADER = "method,timeMillis,peakHeapKilobytes";
+
+    private static final int REPETITIONS = 3;
+
+    private static final long DID_NOT_FINISH = -1;
+
+    /**
+     * Absolute slack added to the limits, so that small targets do not fail because of noise.
+     */
+    private static final long TIME_SLACK_MILLIS = 50;
+    private static final long HEAP_SLACK_KILOBYTES = 16 * 1024;
+
+    private static long timeoutMillis;
+
+    public static void main(String[] args) throws IOException {
+        Path baselinePath = Paths.get(args[0]);
+        Path resultsPath = Paths.get(args[1]);
+        double tolerance = Double.parseDouble(System.getProperty("scalability.tolerance", "0.5"));
+        boolean updateBaseline = Boolean.getBoolean("scalability.updateBaseline");
+        timeoutMillis = Long.parseLong(System.getProperty("scalability.timeoutSeconds", "30")) * 1000;
+
+        setupSoot(System.getProperty("sootClassPath"));
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (int i = 2; i < args.length; i++) {
+            String className = CorpusGenerator.PACKAGE + "." + CorpusGenerator.className(Integer.parseInt(args[i]));
+            SootClass sootClass = Scene.v().forceResolve(className, SootClass.BODIES);
+            for (SootMethod method : sootClass.getMethods()) {
+                if (!method.isConcrete() || method.isConstructor()) {
+                    continue;
+                }
+                String key = sootClass.getShortName() + "." + method.getName();
+                long[] measure = measure(method.retrieveActiveBody());
+                results.put(key, measure);
+                print(key, measure);
+            }
+        }
+
+        write(resultsPath, results);
+        if (updateBaseline) {
+            write(baselinePath, results);
+            System.out.println("Updated the baseline " + baselinePath);
+            return;
+        }
+
+        List<String> regressions = compare(read(baselinePath), results, tolerance);
+        if (!regressions.isEmpty()) {
+            regressions.forEach(System.out::println);
+            System.out.println(regressions.size() + " regressions against " + baselinePath);
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baselinePath);
+    }
+
+    private static void print(String key, long[] measure) {
+        if (measure[0] == DID_NOT_FINISH) {
+            System.out.printf("%-45s did not finish%n", key);
+        } else {
+            System.out.printf("%-45s %8d ms %10d KB%n", key, measure[0], measure[1]);
+        }
+    }
+
+    private static void setupSoot(String sootClassPath) {
+        G.reset();
+        Options.v().parse(new String[]{
+                "-cp", sootClassPath,
+                "-p", "jb", "use-original-names:true",
+                "-p", "jb.ls", "off",
+                "-p", "jb.sils", "off",
+                "-p", "jb.ule", "off",
+                "-p", "jb.cp", "off",
+                "-keep-line-number",
+        });
+        Scene.v().loadNecessaryClasses();
+    }
+
+    /**
+     * Returns the best time in milliseconds and the highest peak heap in kilobytes of running the analysis.
+     */
+    private static long[] measure(Body body) {
+        long bestNanos = Long.MAX_VALUE;
+        long peakBytes = 0;
+        for (int i = 0; i < REPETITIONS; i++) {
+            System.gc();
+            long usedBefore = resetHeapPeak();
+            long start = System.nanoTime();
+            if (!runWithTimeout(() -> new PointsToAnalysis(new ExceptionalUnitGraph(body)))) {
+                return new long[]{DID_NOT_FINISH, DID_NOT_FINISH};
+            }
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            peakBytes = Math.max(peakBytes, heapPeak() - usedBefore);
+        }
+        return new long[]{bestNanos / 1_000_000, Math.max(0, peakBytes) / 1024};
+    }
+
+    /**
+     * Runs the analysis in another thread and stops it if it does not finish in time.
+     * @return false if the analysis was stopped.
+     */
+    @SuppressWarnings("deprecation")
+    private static boolean runWithTimeout(Runnable analysis) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                analysis.run();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "scalability-gate");
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            // Los análisis no se pueden interrumpir, y nada de lo que dejan a medias se vuelve a usar.
+            thread.stop();
+            return false;
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("The analysis failed", failure.get());
+        }
+        return true;
+    }
+
+    /**
+     * Resets the peak of the heap pools and returns the heap in use.
+     */
+    private static long resetHeapPeak() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static List<String> compare(Map<String, long[]> baseline, Map<String, long[]> results, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, long[]> result : results.entrySet()) {
+            long[] expected = baseline.get(result.getKey());
+            if (expected == null) {
+                System.out.println("WARNING: " + result.getKey() + " has no baseline");
+                continue;
+            }
+            if (result.getValue()[0] == DID_NOT_FINISH) {
+                if (expected[0] == DID_NOT_FINISH) {
+                    System.out.println("WARNING: " + result.getKey() + " still does not finish");
+                } else {
+                    regressions.add(result.getKey() + ": did not finish in " + timeoutMillis / 1000 + " s");
+                }
+                continue;
+            }
+            if (expected[0] == DID_NOT_FINISH) {
+                System.out.println(result.getKey() + " finishes now, the baseline should be updated");
+                continue;
+            }
+            long timeLimit = (long) (expected[0] * (1 + tolerance)) + TIME_SLACK_MILLIS;
+            long heapLimit = (long) (expected[1] * (1 + tolerance)) + HEAP_SLACK_KILOBYTES;
+            if (result.getValue()[0] > timeLimit) {
+                regressions.add(result.getKey() + ": " + result.getValue()[0] + " ms, the baseline is " + expected[0] + " ms");
+            }
+            if (result.getValue()[1] > heapLimit) {
+                regressions.add(result.getKey() + ": " + result.getValue()[1] + " KB, the baseline is " + expected[1] + " KB");
+            }
+        }
+        return regressions;
+    }
+
+    private static Map<String, long[]> read(Path path) throws IOException {
+        Map<String, long[]> rows = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.equals(HEADER)) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            rows.put(columns[0], new long[]{Long.parseLong(columns[1]), Long.parseLong(columns[2])});
+        }
+        return rows;
+    }
+
+    private static void write(Path path, Map<String, long[]> rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        rows.forEach((key, measure) -> lines.add(key + "," + measure[0] + "," + measure[1]));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+}
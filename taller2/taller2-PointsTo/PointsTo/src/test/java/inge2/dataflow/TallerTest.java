@@ -1,12 +1,31 @@
 package inge2.dataflow;
 
+import inge2.dataflow.pointstoanalysis.AllocationSites;
+import inge2.dataflow.pointstoanalysis.Axis;
 import inge2.dataflow.pointstoanalysis.Node;
+import inge2.dataflow.pointstoanalysis.NodeSet;
 import inge2.dataflow.pointstoanalysis.PointsToAnalysis;
 import inge2.dataflow.pointstoanalysis.PointsToGraph;
+import inge2.dataflow.pointstoanalysis.Variables;
+import inge2.dataflow.util.soot.CfgFlavour;
+import inge2.dataflow.util.soot.UnitGraphProvider;
 import org.junit.jupiter.api.Test;
+import soot.Body;
+import soot.Scene;
+import soot.toolkits.graph.BriefUnitGraph;
+import soot.toolkits.graph.UnitGraph;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import javax.management.ObjectName;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +44,96 @@ public class TallerTest {
         assertEquals(2, g1.getNodesForVariable("A").size());
     }
 
+    @Test
+    public void testEdgeIndex() {
+        PointsToGraph g1 = new PointsToGraph();
+        PointsToGraph g2 = new PointsToGraph();
+        Node n1 = new Node("N1");
+        Node n2 = new Node("N2");
+        Node n3 = new Node("N3");
+        g1.addEdge(n1, "f", n2);
+        g1.addEdge(n1, "f", n2);
+        g2.addEdge(n1, "f", n3);
+        g2.addEdge(n1, "g", n3);
+        g1.union(g2);
+
+        assertEquals(3, g1.getEdgeCount());
+        assertEquals(new HashSet<>(Arrays.asList(n2, n3)), g1.getReachableNodesByField(n1, "f"));
+        assertTrue(g1.getReachableNodesByField(n2, "f").isEmpty());
+
+        // Los ejes se siguen pudiendo recorrer como triplas.
+        Set<Axis> edges = new HashSet<>(g1.axis);
+        assertEquals(3, edges.size());
+        assertTrue(edges.contains(new Axis(n1, "g", n3)));
+        assertTrue(g1.axis.contains(new Axis(n1, "f", n2)));
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        Variables variables = new Variables();
+        PointsToGraph g1 = new PointsToGraph(variables);
+        PointsToGraph g2 = new PointsToGraph(variables);
+        Node n1 = new Node("N1");
+        Node n2 = new Node("N2");
+        Node n3 = new Node("N3");
+        Set<Node> a = new HashSet<>(Arrays.asList(n1));
+        g1.setNodesForVariable("A", a);
+        g1.addEdge(n1, "f", n2);
+
+        // El grafo no se queda con el conjunto del que llama, y no deja modificar los suyos.
+        a.add(n2);
+        assertEquals(1, g1.getNodesForVariable("A").size());
+        assertThrows(UnsupportedOperationException.class, () -> g1.getNodesForVariable("A").add(n3));
+
+        // Modificar la copia no cambia el original, ni al revés.
+        g2.copy(g1);
+        g2.setNodesForVariable("A", new HashSet<>(Arrays.asList(n2)));
+        g2.addEdge(n1, "f", n3);
+        g1.addEdge(n2, "g", n3);
+        assertEquals(new HashSet<>(Arrays.asList(n1)), g1.getNodesForVariable("A"));
+        assertEquals(new HashSet<>(Arrays.asList(n2)), g1.getReachableNodesByField(n1, "f"));
+        assertEquals(2, g1.getEdgeCount());
+        assertEquals(new HashSet<>(Arrays.asList(n2, n3)), g2.getReachableNodesByField(n1, "f"));
+        assertTrue(g2.getReachableNodesByField(n2, "g").isEmpty());
+        assertEquals(2, g2.getEdgeCount());
+        assertEquals(1, g2.getMappingEntryCount());
+
+        // La unión tampoco modifica los conjuntos del grafo que se une.
+        g2.union(g1);
+        assertEquals(2, g2.getNodesForVariable("A").size());
+        assertEquals(1, g1.getNodesForVariable("A").size());
+        assertEquals(3, g2.getEdgeCount());
+        assertEquals(2, g2.getMappingEntryCount());
+        assertEquals(1, g1.getMappingEntryCount());
+        g2.addEdge(n2, "g", n1);
+        assertEquals(new HashSet<>(Arrays.asList(n3)), g1.getReachableNodesByField(n2, "g"));
+    }
+
+    @Test
+    public void testNodeSet() {
+        Launcher.analyzeClass("inge2.dataflow.targets.Target7");
+        AllocationSites allocationSites = Launcher.getLastPointsToAnalysis().getAllocationSites();
+        Node first = allocationSites.getNode(0);
+        Node second = allocationSites.getNode(1);
+        Node other = new Node("N1");
+
+        NodeSet left = new NodeSet(Arrays.asList(first, other));
+        NodeSet right = new NodeSet(Arrays.asList(second));
+        assertFalse(NodeSet.intersects(left, right));
+        assertTrue(right.addAll(left));
+        assertFalse(right.addAll(left));
+        assertTrue(NodeSet.intersects(left, right));
+        assertTrue(NodeSet.intersects(left, new HashSet<>(Arrays.asList(other))));
+
+        // Los nodos con y sin id conviven, y el conjunto es igual a cualquier Set con los mismos nodos.
+        assertEquals(3, right.size());
+        assertEquals(new HashSet<>(Arrays.asList(first, second, other)), right);
+        assertEquals(right, new HashSet<>(Arrays.asList(first, second, other)));
+        assertTrue(right.remove(first));
+        assertFalse(right.contains(first));
+        assertEquals(new NodeSet(Arrays.asList(other, second)), right);
+    }
+
     @Test
     public void testTarget1() {
         Launcher.analyzeClass("inge2.dataflow.targets.Target1");
@@ -35,6 +144,21 @@ public class TallerTest {
         assertEquals(1, xNodes.size());
     }
 
+    @Test
+    public void testVariableTable() {
+        Launcher.analyzeClass("inge2.dataflow.targets.Target1");
+        PointsToGraph pointsToGraph = Launcher.getLastPointsToAnalysis().getLastPointsToGraph();
+
+        // Las variables se numeran una vez por cuerpo, y los nombres se resuelven a esos números.
+        int x = pointsToGraph.getVariables().indexOf("x");
+        assertTrue(x >= 0);
+        assertSame(pointsToGraph.getNodesForVariable(x), pointsToGraph.getNodesForVariable("x"));
+        assertEquals(-1, pointsToGraph.getVariables().indexOf("noExiste"));
+        assertTrue(pointsToGraph.getNodesForVariable("noExiste").isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList("$stack2", "x")), pointsToGraph.mapping.keySet());
+        assertEquals(2, pointsToGraph.getMappingEntryCount());
+    }
+
     @Test
     public void testTarget2() {
         Launcher.analyzeClass("inge2.dataflow.targets.Target2");
@@ -81,4 +205,165 @@ public class TallerTest {
         assertTrue(pointsToAnalysis.mayAlias("a", "f1", "e"), "a.f1 may-alias e? SI");
         assertFalse(pointsToAnalysis.mayAlias("a", "f1", "b"), "a.f1 may-alias b? NO");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTarget7() {
+        Launcher.analyzeClass("inge2.dataflow.targets.Target7");
+        PointsToAnalysis pointsToAnalysis = Launcher.getLastPointsToAnalysis();
+
+        // Las dos sentencias "new" de la línea 7 son nodos distintos.
+        assertFalse(pointsToAnalysis.mayAlias("x", "y"), "x may-alias y? NO");
+        assertTrue(pointsToAnalysis.mayAlias("x", "f1", "y"), "x.f1 may-alias y? SI");
+
+        AllocationSites allocationSites = pointsToAnalysis.getAllocationSites();
+        assertEquals(2, allocationSites.size());
+        assertEquals("7", allocationSites.getNode(0).name);
+        assertEquals("7#2", allocationSites.getNode(1).name);
+        Node x = pointsToAnalysis.getLastPointsToGraph().getNodesForVariable("x").iterator().next();
+        assertSame(allocationSites.getNode(0), x);
+    }
+
+    @Test
+    public void testTarget8() {
+        PointsToAnalysis pointsToAnalysis = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Launcher.analyzeClass("inge2.dataflow.targets.Target8");
+            return Launcher.getLastPointsToAnalysis();
+        });
+
+        // El ciclo converge: cada unidad se evalúa unas pocas veces, no hasta que se corta.
+        assertTrue(pointsToAnalysis.getFlowThroughCount() < 100, "flowThrough: " + pointsToAnalysis.getFlowThroughCount());
+        assertTrue(pointsToAnalysis.mayAlias("last", "head"), "last may-alias head? SI");
+        assertFalse(pointsToAnalysis.mayAlias("cursor", "head"), "cursor may-alias head? NO");
+        assertTrue(pointsToAnalysis.mayAlias("head", "next", "cursor"), "head.next may-alias cursor? SI");
+        assertTrue(pointsToAnalysis.mayAlias("last", "next", "last"), "last.next may-alias last? SI");
+        assertFalse(pointsToAnalysis.mayAlias("other", "last"), "other may-alias last? NO");
+    }
+
+    @Test
+    public void testTarget9() {
+        PointsToAnalysis pointsToAnalysis = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Launcher.analyzeClass("inge2.dataflow.targets.Target9");
+            return Launcher.getLastPointsToAnalysis();
+        });
+
+        assertTrue(pointsToAnalysis.getFlowThroughCount() < 300, "flowThrough: " + pointsToAnalysis.getFlowThroughCount());
+        assertTrue(pointsToAnalysis.mayAlias("cursor", "root"), "cursor may-alias root? SI");
+        assertTrue(pointsToAnalysis.mayAlias("cursor", "child"), "cursor may-alias child? SI");
+        assertFalse(pointsToAnalysis.mayAlias("found", "root"), "found may-alias root? NO");
+        assertTrue(pointsToAnalysis.mayAlias("root", "right", "found"), "root.right may-alias found? SI");
+    }
+
+    @Test
+    public void testStructuralEquality() {
+        Variables variables = new Variables();
+        PointsToGraph g1 = new PointsToGraph(variables);
+        PointsToGraph g2 = new PointsToGraph(variables);
+        Node n1 = new Node("N1");
+        Node n2 = new Node("N2");
+
+        // Los mismos ejes y variables, agregados en otro orden y por otro camino, dan grafos iguales.
+        g1.setNodesForVariable("A", new HashSet<>(Arrays.asList(n1, n2)));
+        g1.addEdge(n1, "f", n2);
+        g1.addEdge(n1, "f", n1);
+        g2.addEdges(n1, "f", new HashSet<>(Arrays.asList(n2, n1)));
+        assertNotEquals(g1, g2);
+        g2.setNodesForVariable("A", new HashSet<>(Arrays.asList(n2)));
+        g2.union(g1);
+        assertEquals(g1, g2);
+        assertEquals(g1.hashCode(), g2.hashCode());
+
+        // Una copia es igual hasta que alguno de los dos cambia.
+        PointsToGraph copy = new PointsToGraph(variables);
+        copy.copy(g1);
+        assertEquals(g1, copy);
+        copy.addEdge(n2, "f", n1);
+        assertNotEquals(g1, copy);
+        g1.addEdge(n2, "f", n1);
+        assertEquals(g1, copy);
+
+        // Grafos con distintas numeraciones de variables también se comparan por nombre.
+        PointsToGraph other = new PointsToGraph();
+        other.setNodesForVariable("B", new HashSet<>());
+        other.union(g1);
+        assertNotEquals(g1, other);
+        other.mapping.remove("B");
+        assertEquals(g1, other);
+        assertEquals(g1.hashCode(), other.hashCode());
+    }
+
+    @Test
+    public void testCfgFlavour() {
+        System.setProperty(CfgFlavour.SYSTEM_PROPERTY, "brief");
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.Target1");
+        } finally {
+            System.clearProperty(CfgFlavour.SYSTEM_PROPERTY);
+        }
+
+        // Solo se construye el grafo de entryPoint, y se libera al terminar la corrida: pedirlo de nuevo lo construye, y
+        // después se reutiliza.
+        UnitGraphProvider graphs = Launcher.getGraphs();
+        assertEquals(CfgFlavour.BRIEF, graphs.getFlavour());
+        assertEquals(1, graphs.getBuiltGraphs());
+        Body body = Scene.v().getMethod("<inge2.dataflow.targets.Target1: void entryPoint()>").getActiveBody();
+        assertEquals(0, graphs.getBuildNanos(body));
+        UnitGraph graph = graphs.getGraph(body);
+        assertTrue(graph instanceof BriefUnitGraph);
+        assertSame(graph, graphs.getGraph(body));
+        assertEquals(2, graphs.getBuiltGraphs());
+        graphs.release(body);
+    }
+
+    @Test
+    public void testFindingsOutput() throws IOException {
+        Path output = Files.createTempFile("pointsto", ".jsonl");
+        System.setProperty(FindingsWriter.SYSTEM_PROPERTY, output.toString());
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.Target1");
+        } finally {
+            System.clearProperty(FindingsWriter.SYSTEM_PROPERTY);
+        }
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        Files.delete(output);
+        assertEquals(1, lines.size());
+        assertEquals("{\"method\":\"<inge2.dataflow.targets.Target1: void entryPoint()>\","
+                + "\"variables\":{\"$stack2\":[\"5\"],\"x\":[\"5\"]},\"edges\":[]}", lines.get(0));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Path output = Files.createTempFile("metrics", ".csv");
+        System.setProperty(AnalysisMetrics.SYSTEM_PROPERTY, output.toString());
+        try {
+            Launcher.analyzeClass("inge2.dataflow.targets.Target6");
+        } finally {
+            System.clearProperty(AnalysisMetrics.SYSTEM_PROPERTY);
+        }
+
+        String signature = "<inge2.dataflow.targets.Target6: void entryPoint()>";
+        PointsToAnalysis pointsToAnalysis = Launcher.getLastPointsToAnalysis();
+        MethodMetrics metrics = Launcher.getMetrics().get(signature);
+        assertEquals(pointsToAnalysis.getFlowThroughCount(), metrics.getFlowThroughCount());
+        assertEquals(4, metrics.getMaxNodeCount());
+        assertEquals(3, metrics.getMaxEdgeCount());
+        assertTrue(metrics.getCfgNanos() > 0 && metrics.getFixpointNanos() > 0);
+
+        // Las métricas también se pueden leer por JMX.
+        Object analyzedMethods = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(AnalysisMetrics.OBJECT_NAME), "AnalyzedMethodCount");
+        assertEquals(1, analyzedMethods);
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        Files.delete(output);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("\"" + signature + "\","));
+
+        // Sin archivo de métricas no se cuentan los nodos, pero el resto se mide igual.
+        Launcher.analyzeClass("inge2.dataflow.targets.Target6");
+        metrics = Launcher.getMetrics().get(signature);
+        assertEquals(-1, metrics.getMaxNodeCount());
+        assertEquals(3, metrics.getMaxEdgeCount());
+        assertEquals(Launcher.getLastPointsToAnalysis().getFixpointNanos(), metrics.getFixpointNanos());
+    }
+}